@@ -33,7 +33,9 @@ import android.telephony.TelephonyManager;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.dashboard.ControllerLatencyTracker;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
+import com.android.settings.search.NonIndexableKeysCache;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -58,6 +60,10 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_SEARCH_NON_INDEXABLE_KEYS_CACHE = "search_non_indexable_keys_cache";
+    @VisibleForTesting
+    static final String KEY_CONTROLLER_LATENCY = "controller_latency";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -77,6 +83,9 @@ public class SettingsDumpService extends Service {
             dump.put(KEY_MEMORY, dumpMemory());
             dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
             dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+            dump.put(KEY_SEARCH_NON_INDEXABLE_KEYS_CACHE,
+                    NonIndexableKeysCache.getInstance(this).dumpStats());
+            dump.put(KEY_CONTROLLER_LATENCY, ControllerLatencyTracker.getInstance().dump());
         } catch (Exception e) {
             e.printStackTrace();
         }
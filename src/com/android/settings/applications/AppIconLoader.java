@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.IconDrawableFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads and caches the badged icon and the label of apps, shared by the app lists so that an
+ * icon decoded for one of them is reused by the others.
+ *
+ * The icons are kept in an LRU cache bounded by their bitmap bytes, and each caller gets its own
+ * drawable sharing the cached bitmap. Asynchronous requests for the same app are merged, and the
+ * most recent request is loaded first, so that the rows a list has just bound are loaded before
+ * the ones it bound earlier and may have scrolled away from.
+ */
+public class AppIconLoader {
+
+    private static final String TAG = "AppIconLoader";
+
+    // Fraction of the heap the icons may use.
+    private static final int HEAP_FRACTION = 32;
+    private static final int MAX_LABELS = 500;
+    // Used for the drawables which aren't backed by a bitmap, assuming ARGB_8888.
+    private static final int BYTES_PER_PIXEL = 4;
+    // Prefix of the keys of the icons loaded without badge, which still end with the package.
+    private static final String UNBADGED_KEY_PREFIX = "unbadged|";
+
+    private static AppIconLoader sInstance;
+
+    /**
+     * Receives an icon requested with {@link #requestIcon(ApplicationInfo, Callback)}, on the
+     * main thread.
+     */
+    public interface Callback {
+        void onIconLoaded(ApplicationInfo info, Drawable icon);
+    }
+
+    private final IconDrawableFactory mIconDrawableFactory;
+    private final Context mContext;
+    private final Executor mExecutor;
+    private final LruCache<String, Drawable> mIcons;
+    private final LruCache<String, CharSequence> mLabels = new LruCache<>(MAX_LABELS);
+    // Pending requests by key, and in the order they were last made.
+    private final ArrayMap<String, Request> mRequests = new ArrayMap<>();
+    private final ArrayList<Request> mRequestQueue = new ArrayList<>();
+    // The request being loaded, it can still be cancelled until it's delivered.
+    private Request mCurrentRequest;
+    private Locale mLabelsLocale;
+    private boolean mLoading;
+
+    public static synchronized AppIconLoader getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new AppIconLoader(appContext, ThreadUtils::postOnBackgroundThread,
+                    (int) (Runtime.getRuntime().maxMemory() / HEAP_FRACTION));
+            registerPackageReceiver(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppIconLoader(Context context, Executor executor, int maxIconBytes) {
+        mContext = context;
+        mIconDrawableFactory = IconDrawableFactory.newInstance(context);
+        mExecutor = executor;
+        mIcons = new LruCache<String, Drawable>(maxIconBytes) {
+            @Override
+            protected int sizeOf(String key, Drawable icon) {
+                return getByteCount(icon);
+            }
+        };
+    }
+
+    /**
+     * @return the icon of the app if it's already loaded, without loading it.
+     */
+    public Drawable getCachedIcon(ApplicationInfo info) {
+        final Drawable icon = mIcons.get(getKey(info));
+        return icon == null ? null : newInstance(icon);
+    }
+
+    /**
+     * Loads the icon of the app, or returns the cached one. Doesn't need to run on the main
+     * thread.
+     */
+    public Drawable loadIcon(ApplicationInfo info) {
+        final String key = getKey(info);
+        Drawable icon = mIcons.get(key);
+        if (icon == null) {
+            icon = mIconDrawableFactory.getBadgedIcon(info);
+            if (icon == null) {
+                return null;
+            }
+            mIcons.put(key, icon);
+        }
+        return newInstance(icon);
+    }
+
+    /**
+     * Loads the icon of the app without the badge of its profile, or returns the cached one, for
+     * the callers which badge the icon themselves. Doesn't need to run on the main thread.
+     */
+    public Drawable loadUnbadgedIcon(ApplicationInfo info) {
+        final int myUserId = UserHandle.myUserId();
+        if (UserHandle.getUserId(info.uid) == myUserId) {
+            // Apps of this user aren't badged.
+            return loadIcon(info);
+        }
+        final String key = UNBADGED_KEY_PREFIX + getKey(info);
+        Drawable icon = mIcons.get(key);
+        if (icon == null) {
+            icon = mIconDrawableFactory.getBadgedIcon(info, myUserId);
+            if (icon == null) {
+                return null;
+            }
+            mIcons.put(key, icon);
+        }
+        return newInstance(icon);
+    }
+
+    /**
+     * Loads the label of the app in the current locale, or returns the cached one.
+     */
+    public CharSequence loadLabel(ApplicationInfo info) {
+        final Locale locale = Locale.getDefault();
+        synchronized (mLabels) {
+            if (!locale.equals(mLabelsLocale)) {
+                mLabels.evictAll();
+                mLabelsLocale = locale;
+            }
+        }
+        final String key = getKey(info);
+        CharSequence label = mLabels.get(key);
+        if (label == null) {
+            label = info.loadLabel(mContext.getPackageManager());
+            if (label != null) {
+                mLabels.put(key, label);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Loads the icon of the app in the background, unless it's cached in which case the
+     * callback is invoked before returning. Must be called on the main thread.
+     */
+    public void requestIcon(ApplicationInfo info, Callback callback) {
+        final String key = getKey(info);
+        final Drawable icon = mIcons.get(key);
+        if (icon != null) {
+            callback.onIconLoaded(info, newInstance(icon));
+            return;
+        }
+        synchronized (mRequests) {
+            Request request = mRequests.get(key);
+            if (request == null) {
+                request = new Request(key, info);
+                mRequests.put(key, request);
+            } else {
+                mRequestQueue.remove(request);
+            }
+            // The end of the queue is loaded first.
+            mRequestQueue.add(request);
+            request.mCallbacks.add(callback);
+            if (mLoading) {
+                return;
+            }
+            mLoading = true;
+        }
+        mExecutor.execute(this::loadRequests);
+    }
+
+    /**
+     * Cancels the requests made with the callback, e.g. when the row it updates is recycled.
+     */
+    public void cancelRequest(Callback callback) {
+        synchronized (mRequests) {
+            for (int i = mRequestQueue.size() - 1; i >= 0; i--) {
+                final Request request = mRequestQueue.get(i);
+                if (request.mCallbacks.remove(callback) && request.mCallbacks.isEmpty()) {
+                    mRequestQueue.remove(i);
+                    mRequests.remove(request.mKey);
+                }
+            }
+            if (mCurrentRequest != null) {
+                mCurrentRequest.mCallbacks.remove(callback);
+            }
+        }
+    }
+
+    /**
+     * Drops the icons and labels of a package, for all the users.
+     */
+    public void invalidate(String packageName) {
+        final String suffix = "|" + packageName;
+        for (String key : mIcons.snapshot().keySet()) {
+            if (key.endsWith(suffix)) {
+                mIcons.remove(key);
+            }
+        }
+        for (String key : mLabels.snapshot().keySet()) {
+            if (key.endsWith(suffix)) {
+                mLabels.remove(key);
+            }
+        }
+    }
+
+    private void loadRequests() {
+        while (true) {
+            final Request request;
+            synchronized (mRequests) {
+                if (mRequestQueue.isEmpty()) {
+                    mCurrentRequest = null;
+                    mLoading = false;
+                    return;
+                }
+                request = mRequestQueue.remove(mRequestQueue.size() - 1);
+                mRequests.remove(request.mKey);
+                mCurrentRequest = request;
+            }
+            Drawable icon = null;
+            try {
+                icon = loadIcon(request.mInfo);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Cannot load icon of " + request.mKey, e);
+            }
+            if (icon != null) {
+                final Drawable loadedIcon = icon;
+                ThreadUtils.postOnMainThread(() -> request.deliver(loadedIcon));
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static int getByteCount(Drawable icon) {
+        if (icon instanceof BitmapDrawable) {
+            final Bitmap bitmap = ((BitmapDrawable) icon).getBitmap();
+            if (bitmap != null) {
+                return bitmap.getAllocationByteCount();
+            }
+        }
+        return Math.max(1, Math.max(0, icon.getIntrinsicWidth())
+                * Math.max(0, icon.getIntrinsicHeight()) * BYTES_PER_PIXEL);
+    }
+
+    /**
+     * @return an instance of the cached {@param icon} for a single view, as a drawable keeps the
+     * bounds and callback of the view it's drawn in.
+     */
+    @VisibleForTesting
+    static Drawable newInstance(Drawable icon) {
+        final Drawable.ConstantState state = icon.getConstantState();
+        return state != null ? state.newDrawable() : icon.mutate();
+    }
+
+    private static String getKey(ApplicationInfo info) {
+        return UserHandle.getUserId(info.uid) + "|" + info.packageName;
+    }
+
+    private static void registerPackageReceiver(Context context) {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                final Uri data = intent.getData();
+                if (data != null) {
+                    getInstance(context).invalidate(data.getSchemeSpecificPart());
+                }
+            }
+        }, filter);
+    }
+
+    private class Request {
+        private final String mKey;
+        private final ApplicationInfo mInfo;
+        private final List<Callback> mCallbacks = new ArrayList<>();
+
+        Request(String key, ApplicationInfo info) {
+            mKey = key;
+            mInfo = info;
+        }
+
+        // Called on the main thread, after the request left mRequests.
+        void deliver(Drawable icon) {
+            final List<Callback> callbacks;
+            synchronized (mRequests) {
+                callbacks = new ArrayList<>(mCallbacks);
+                mCallbacks.clear();
+            }
+            for (Callback callback : callbacks) {
+                callback.onIconLoaded(mInfo, newInstance(icon));
+            }
+        }
+    }
+}
@@ -49,7 +49,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     }
 
     public void resume() {
-        mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
+        scheduleLoadAll();
         mAppSession.onResume();
     }
 
@@ -62,17 +62,21 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     }
 
     public void forceUpdate(String pkg, int uid) {
+        if (mHandler.hasMessages(BackgroundHandler.MSG_LOAD_ALL)) {
+            // The pending load covers the package.
+            return;
+        }
         mHandler.obtainMessage(BackgroundHandler.MSG_FORCE_LOAD_PKG, uid, 0, pkg).sendToTarget();
     }
 
     @Override
     public void onPackageListChanged() {
-        mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
+        scheduleLoadAll();
     }
 
     @Override
     public void onLoadEntriesCompleted() {
-        mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
+        scheduleLoadAll();
     }
 
     @Override
@@ -105,6 +109,22 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         // No op.
     }
 
+    /**
+     * Loads the extra info of all the apps, unless it's already pending. A burst of changes
+     * results in a single load.
+     */
+    private void scheduleLoadAll() {
+        if (!mHandler.hasMessages(BackgroundHandler.MSG_LOAD_ALL)) {
+            mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
+        }
+    }
+
+    private void notifyInfoUpdated() {
+        if (!mMainHandler.hasMessages(MainHandler.MSG_INFO_UPDATED)) {
+            mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
+        }
+    }
+
     protected abstract void loadAllExtraInfo();
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
@@ -138,8 +158,10 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_LOAD_ALL:
+                    // The packages waiting to be loaded are loaded now.
+                    removeMessages(MSG_FORCE_LOAD_PKG);
                     loadAllExtraInfo();
-                    mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
+                    notifyInfoUpdated();
                     break;
                 case MSG_FORCE_LOAD_PKG:
                     ArrayList<AppEntry> apps = mAppSession.getAllApps();
@@ -152,7 +174,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
                             updateExtraInfo(app, pkg, uid);
                         }
                     }
-                    mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
+                    notifyInfoUpdated();
                     break;
             }
         }
@@ -24,6 +24,7 @@ import android.os.UserManager;
 import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Switch;
@@ -36,6 +37,7 @@ import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
 import com.android.settingslib.utils.StringUtil;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -53,7 +55,9 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private IUsageStatsManager mUsageStatsManager;
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
-    private static final int DAYS_TO_CHECK = 7;
+    private final SparseArray<NotificationsSentHistory> mHistories = new SparseArray<>();
+    private static final int DAYS_TO_CHECK = NotificationsSentHistory.DAYS_TO_CHECK;
+    private static final String HISTORY_FILE_PREFIX = "notifications_sent_";
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
             Callback callback, IUsageStatsManager usageStatsManager,
@@ -95,8 +99,17 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
 
     @Override
     protected void updateExtraInfo(AppEntry entry, String pkg, int uid) {
-        NotificationsSentState stats = getAggregatedUsageEvents(
-                UserHandle.getUserId(entry.info.uid), entry.info.packageName);
+        final int userId = UserHandle.getUserId(entry.info.uid);
+        final NotificationsSentHistory history = mHistories.get(userId);
+        NotificationsSentState stats;
+        if (history != null) {
+            // Only replays the events since the last load.
+            history.update(mUsageStatsManager, mContext.getPackageName(),
+                    System.currentTimeMillis());
+            stats = history.getState(entry.info.packageName);
+        } else {
+            stats = getAggregatedUsageEvents(userId, entry.info.packageName);
+        }
         calculateAvgSentCounts(stats);
         addBlockStatus(entry, stats);
         entry.extraInfo = stats;
@@ -143,39 +156,24 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
 
         long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
         for (int userId : mUserIds) {
-            UsageEvents events = null;
-            try {
-                events = mUsageStatsManager.queryEventsForUser(
-                        startTime, now, userId, mContext.getPackageName());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
-            if (events != null) {
-                UsageEvents.Event event = new UsageEvents.Event();
-                while (events.hasNextEvent()) {
-                    events.getNextEvent(event);
-                    NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
-                    }
-
-                    if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
-                    }
-
-                }
-            }
+            final NotificationsSentHistory history = getHistory(userId);
+            history.update(mUsageStatsManager, mContext.getPackageName(), now);
+            history.fillStates(aggregatedStats);
         }
         return aggregatedStats;
     }
 
+    private NotificationsSentHistory getHistory(int userId) {
+        NotificationsSentHistory history = mHistories.get(userId);
+        if (history == null) {
+            history = new NotificationsSentHistory(
+                    new File(mContext.getFilesDir(), HISTORY_FILE_PREFIX + userId), userId);
+            mHistories.put(userId, history);
+        }
+        return history;
+    }
+
     protected NotificationsSentState getAggregatedUsageEvents(int userId, String pkg) {
         NotificationsSentState stats = null;
 
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.os.RemoteException;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Rolling count of the notifications sent by each package of a user, in time buckets covering
+ * the last {@link #DAYS_TO_CHECK} days, persisted between loads.
+ *
+ * Each update only replays the usage events since the previous one, and drops the buckets which
+ * fell out of the window. The window is exact to within one bucket. The file is only written when
+ * the counts or the window changed, or when the persisted replay point lags too far behind.
+ */
+class NotificationsSentHistory {
+
+    private static final String TAG = "NotificationsSentHist";
+
+    private static final int MAGIC = 0x4e534854; // "NSHT"
+    private static final int VERSION = 1;
+
+    static final int DAYS_TO_CHECK = 7;
+    private static final int BUCKETS_PER_DAY = 4;
+    @VisibleForTesting
+    static final long BUCKET_MILLIS = DateUtils.DAY_IN_MILLIS / BUCKETS_PER_DAY;
+    // One more than the window spans, for the partial buckets at both of its ends.
+    private static final int BUCKET_COUNT = DAYS_TO_CHECK * BUCKETS_PER_DAY + 1;
+    // Updates closer than this to the previous one reuse its counts.
+    @VisibleForTesting
+    static final long MIN_UPDATE_INTERVAL_MS = 5 * DateUtils.SECOND_IN_MILLIS;
+    // How far mProcessedUntil may advance without being persisted, when no count changed.
+    private static final long MAX_UNPERSISTED_MILLIS = DateUtils.HOUR_IN_MILLIS;
+
+    private final AtomicFile mFile;
+    private final int mUserId;
+    private final ArrayMap<String, PackageCounts> mPackages = new ArrayMap<>();
+    // Events before this time are already counted.
+    private long mProcessedUntil;
+    // The oldest bucket in the window, as a number of buckets since the epoch.
+    private long mFirstBucket;
+    // The mProcessedUntil of the file, replaying the events since then counts nothing new.
+    private long mPersistedUntil;
+    // The time of the last update of this instance, 0 if none.
+    private long mLastUpdate;
+    private boolean mLoaded;
+
+    NotificationsSentHistory(File file, int userId) {
+        mFile = new AtomicFile(file);
+        mUserId = userId;
+    }
+
+    /**
+     * Counts the notifications sent since the last update, and persists the history if it
+     * changed. Does nothing if the last update was less than {@link #MIN_UPDATE_INTERVAL_MS} ago.
+     */
+    synchronized void update(IUsageStatsManager usageStatsManager, String callingPackage,
+            long now) {
+        if (!mLoaded) {
+            mLoaded = true;
+            readFile();
+        }
+        if (mLastUpdate != 0L && now >= mLastUpdate
+                && now - mLastUpdate < MIN_UPDATE_INTERVAL_MS) {
+            return;
+        }
+        mLastUpdate = now;
+        boolean changed = false;
+        final long windowStart = now - DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK;
+        if (mProcessedUntil < windowStart || mProcessedUntil > now) {
+            // Too old to be advanced, or the clock went backwards.
+            mPackages.clear();
+            mProcessedUntil = windowStart;
+            mFirstBucket = windowStart / BUCKET_MILLIS;
+            changed = true;
+        }
+        changed |= advanceWindow(windowStart / BUCKET_MILLIS);
+
+        UsageEvents events = null;
+        try {
+            events = usageStatsManager.queryEventsForUser(
+                    mProcessedUntil, now, mUserId, callingPackage);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Cannot query usage events", e);
+            return;
+        }
+        if (events != null) {
+            final long currentBucket = now / BUCKET_MILLIS;
+            final UsageEvents.Event event = new UsageEvents.Event();
+            while (events.hasNextEvent()) {
+                events.getNextEvent(event);
+                if (event.getEventType() != UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
+                    continue;
+                }
+                PackageCounts counts = mPackages.get(event.getPackageName());
+                if (counts == null) {
+                    counts = new PackageCounts();
+                    mPackages.put(event.getPackageName(), counts);
+                }
+                // The query bounds the events, keep any skewed timestamp within the window.
+                final long bucket = Math.max(mFirstBucket,
+                        Math.min(currentBucket, event.getTimeStamp() / BUCKET_MILLIS));
+                counts.mCounts[(int) (bucket % BUCKET_COUNT)]++;
+                if (event.getTimeStamp() > counts.mLastSent) {
+                    counts.mLastSent = event.getTimeStamp();
+                }
+                changed = true;
+            }
+        }
+        mProcessedUntil = now;
+        if (changed || now - mPersistedUntil > MAX_UNPERSISTED_MILLIS) {
+            writeFile();
+        }
+    }
+
+    /**
+     * @return the notifications sent by the package in the window, or {@code null} if none.
+     */
+    synchronized NotificationsSentState getState(String packageName) {
+        final PackageCounts counts = mPackages.get(packageName);
+        return counts == null ? null : counts.toState();
+    }
+
+    /**
+     * Puts the state of every package which sent notifications in the window, keyed by
+     * {@link AppStateNotificationBridge#getKey(int, String)}.
+     */
+    synchronized void fillStates(Map<String, NotificationsSentState> states) {
+        for (Map.Entry<String, PackageCounts> entry : mPackages.entrySet()) {
+            states.put(AppStateNotificationBridge.getKey(mUserId, entry.getKey()),
+                    entry.getValue().toState());
+        }
+    }
+
+    /**
+     * @return whether the window moved.
+     */
+    private boolean advanceWindow(long firstBucket) {
+        if (firstBucket <= mFirstBucket) {
+            return false;
+        }
+        final long end = Math.min(firstBucket, mFirstBucket + BUCKET_COUNT);
+        for (int i = mPackages.size() - 1; i >= 0; i--) {
+            final PackageCounts counts = mPackages.valueAt(i);
+            for (long bucket = mFirstBucket; bucket < end; bucket++) {
+                counts.mCounts[(int) (bucket % BUCKET_COUNT)] = 0;
+            }
+            if (counts.getSentCount() == 0) {
+                mPackages.removeAt(i);
+            }
+        }
+        mFirstBucket = firstBucket;
+        return true;
+    }
+
+    private void readFile() {
+        try (DataInputStream in = new DataInputStream(mFile.openRead())) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            final long processedUntil = in.readLong();
+            final long firstBucket = in.readLong();
+            final int packageCount = in.readInt();
+            for (int i = 0; i < packageCount; i++) {
+                final String packageName = in.readUTF();
+                final PackageCounts counts = new PackageCounts();
+                counts.mLastSent = in.readLong();
+                for (int j = 0; j < BUCKET_COUNT; j++) {
+                    counts.mCounts[j] = in.readInt();
+                }
+                mPackages.put(packageName, counts);
+            }
+            mProcessedUntil = processedUntil;
+            mPersistedUntil = processedUntil;
+            mFirstBucket = firstBucket;
+        } catch (FileNotFoundException e) {
+            // Nothing persisted yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read notifications sent history", e);
+            mPackages.clear();
+        }
+    }
+
+    private void writeFile() {
+        FileOutputStream out = null;
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(mProcessedUntil);
+            data.writeLong(mFirstBucket);
+            data.writeInt(mPackages.size());
+            for (Map.Entry<String, PackageCounts> entry : mPackages.entrySet()) {
+                data.writeUTF(entry.getKey());
+                data.writeLong(entry.getValue().mLastSent);
+                for (int count : entry.getValue().mCounts) {
+                    data.writeInt(count);
+                }
+            }
+            data.flush();
+
+            out = mFile.startWrite();
+            bytes.writeTo(out);
+            mFile.finishWrite(out);
+            mPersistedUntil = mProcessedUntil;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write notifications sent history", e);
+            mFile.failWrite(out);
+        }
+    }
+
+    private static class PackageCounts {
+        // Indexed by the number of buckets since the epoch, modulo BUCKET_COUNT.
+        private final int[] mCounts = new int[BUCKET_COUNT];
+        private long mLastSent;
+
+        int getSentCount() {
+            int sentCount = 0;
+            for (int count : mCounts) {
+                sentCount += count;
+            }
+            return sentCount;
+        }
+
+        NotificationsSentState toState() {
+            final NotificationsSentState state = new NotificationsSentState();
+            state.sentCount = getSentCount();
+            state.lastSent = mLastSent;
+            return state;
+        }
+    }
+}
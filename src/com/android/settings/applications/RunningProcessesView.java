@@ -51,6 +51,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 public class RunningProcessesView extends FrameLayout
         implements AdapterView.OnItemClickListener, RecyclerListener,
@@ -102,6 +103,8 @@ public class RunningProcessesView extends FrameLayout
         ViewHolder mHolder;
         long mFirstRunTime;
         boolean mSetBackground;
+        // The content version of the MergedItem when it was bound.
+        int mBoundVersion;
 
         void updateTime(Context context, StringBuilder builder) {
             TextView uptimeView = null;
@@ -192,6 +195,9 @@ public class RunningProcessesView extends FrameLayout
                 ai.mItem = item;
                 ai.mHolder = this;
                 ai.mFirstRunTime = item.mActiveSince;
+                if (item instanceof RunningState.MergedItem) {
+                    ai.mBoundVersion = ((RunningState.MergedItem) item).mContentVersion;
+                }
                 if (item.mBackground) {
                     description.setText(rootView.getContext().getText(R.string.cached));
                 } else {
@@ -234,21 +240,52 @@ public class RunningProcessesView extends FrameLayout
             return mShowBackground;
         }
 
-        void refreshItems() {
+        /**
+         * @return whether the list of items changed, rather than only their content.
+         */
+        boolean refreshItems() {
             ArrayList<RunningState.MergedItem> newItems =
                 mShowBackground ? mState.getCurrentBackgroundItems()
                         : mState.getCurrentMergedItems();
-            if (mOrigItems != newItems) {
-                mOrigItems = newItems;
-                if (newItems == null) {
-                    mItems.clear();
-                } else {
-                    mItems.clear();
-                    mItems.addAll(newItems);
-                    if (mShowBackground) {
-                        Collections.sort(mItems, mState.mBackgroundComparator);
+            if (mOrigItems == newItems) {
+                return false;
+            }
+            mOrigItems = newItems;
+            mItems.clear();
+            if (newItems != null) {
+                mItems.addAll(newItems);
+                if (mShowBackground) {
+                    Collections.sort(mItems, mState.mBackgroundComparator);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Binds again the visible rows whose item content changed since they were bound.
+         */
+        void rebindChangedItems() {
+            synchronized (mState.mLock) {
+                ArrayList<View> changedViews = null;
+                for (Map.Entry<View, ActiveItem> entry : mActiveItems.entrySet()) {
+                    final ActiveItem ai = entry.getValue();
+                    if (ai.mItem instanceof RunningState.MergedItem && ai.mBoundVersion
+                            != ((RunningState.MergedItem) ai.mItem).mContentVersion) {
+                        if (changedViews == null) {
+                            changedViews = new ArrayList<View>();
+                        }
+                        changedViews.add(entry.getKey());
                     }
                 }
+                if (changedViews == null) {
+                    return;
+                }
+                for (int i = 0; i < changedViews.size(); i++) {
+                    final View view = changedViews.get(i);
+                    final ViewHolder vh = (ViewHolder) view.getTag();
+                    mActiveItems.put(view, vh.bind(mState, mActiveItems.get(view).mItem,
+                            mBuilder));
+                }
             }
         }
 
@@ -317,8 +354,12 @@ public class RunningProcessesView extends FrameLayout
     void refreshUi(boolean dataChanged) {
         if (dataChanged) {
             ServiceListAdapter adapter = mAdapter;
-            adapter.refreshItems();
-            adapter.notifyDataSetChanged();
+            if (adapter.refreshItems()) {
+                adapter.notifyDataSetChanged();
+            } else {
+                // Same rows as before, only update the ones whose content changed.
+                adapter.rebindChangedItems();
+            }
         }
 
         if (mDataAvail != null) {
@@ -53,6 +53,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -125,18 +126,28 @@ public class RunningState {
     final SparseArray<MergedItem> mOtherUserBackgroundItems = new SparseArray<MergedItem>();
 
     static class AppProcessInfo {
-        final ActivityManager.RunningAppProcessInfo info;
+        ActivityManager.RunningAppProcessInfo info;
         boolean hasServices;
         boolean hasForegroundServices;
 
-        AppProcessInfo(ActivityManager.RunningAppProcessInfo _info) {
+        void set(ActivityManager.RunningAppProcessInfo _info) {
             info = _info;
+            hasServices = false;
+            hasForegroundServices = false;
         }
     }
 
     // Temporary structure used when updating above information.
     final SparseArray<AppProcessInfo> mTmpAppProcesses = new SparseArray<AppProcessInfo>();
 
+    // Recycled entries of mTmpAppProcesses, and scratch lists and arrays reused by every
+    // update so that a refresh tick which doesn't change anything doesn't allocate them.
+    final ArrayList<AppProcessInfo> mAppProcessInfoPool = new ArrayList<AppProcessInfo>();
+    final ArrayList<ProcessItem> mTmpSortedProcesses = new ArrayList<ProcessItem>();
+    final ArrayList<BaseItem> mTmpItems = new ArrayList<BaseItem>();
+    final ArrayList<MergedItem> mTmpMergedItems = new ArrayList<MergedItem>();
+    int[] mTmpPids = new int[0];
+
     int mSequence = 0;
 
     final Comparator<RunningState.MergedItem> mBackgroundComparator
@@ -609,6 +620,9 @@ public class RunningState {
         
         private int mLastNumProcesses = -1, mLastNumServices = -1;
 
+        // Bumped whenever update() changes what a row shows, other than the size and time.
+        int mContentVersion;
+
         MergedItem(int userId) {
             super(false, userId);
         }
@@ -630,7 +644,15 @@ public class RunningState {
             }
         }
 
+        /**
+         * @return whether the label, description, icon or start time of the item changed.
+         */
         boolean update(Context context, boolean background) {
+            final boolean oldBackground = mBackground;
+            final PackageItemInfo oldPackageInfo = mPackageInfo;
+            final CharSequence oldDisplayLabel = mDisplayLabel;
+            final String oldDescription = mDescription;
+            final long oldActiveSince = mActiveSince;
             mBackground = background;
 
             if (mUser != null) {
@@ -676,6 +698,13 @@ public class RunningState {
                 }
             }
 
+            if (oldBackground != mBackground || oldPackageInfo != mPackageInfo
+                    || !Objects.equals(oldDisplayLabel, mDisplayLabel)
+                    || !Objects.equals(oldDescription, mDescription)
+                    || oldActiveSince != mActiveSince) {
+                mContentVersion++;
+                return true;
+            }
             return false;
         }
         
@@ -932,10 +961,19 @@ public class RunningState {
         List<ActivityManager.RunningAppProcessInfo> processes
                 = am.getRunningAppProcesses();
         final int NP = processes != null ? processes.size() : 0;
+        for (int i = 0; i < mTmpAppProcesses.size(); i++) {
+            final AppProcessInfo ainfo = mTmpAppProcesses.valueAt(i);
+            ainfo.info = null;
+            mAppProcessInfoPool.add(ainfo);
+        }
         mTmpAppProcesses.clear();
         for (int i=0; i<NP; i++) {
             ActivityManager.RunningAppProcessInfo pi = processes.get(i);
-            mTmpAppProcesses.put(pi.pid, new AppProcessInfo(pi));
+            final int poolSize = mAppProcessInfoPool.size();
+            AppProcessInfo ainfo = poolSize > 0
+                    ? mAppProcessInfoPool.remove(poolSize - 1) : new AppProcessInfo();
+            ainfo.set(pi);
+            mTmpAppProcesses.put(pi.pid, ainfo);
         }
 
         // Initial iteration through running services to collect per-process
@@ -1110,8 +1148,8 @@ public class RunningState {
         }
         
         // Look for services and their primary processes that no longer exist...
-        ArrayList<Integer> uidToDelete = null;
-        for (int i=0; i<mServiceProcessesByName.size(); i++) {
+        // Iterate backwards so that uids left without processes can be removed in place.
+        for (int i = mServiceProcessesByName.size() - 1; i >= 0; i--) {
             HashMap<String, ProcessItem> procs = mServiceProcessesByName.valueAt(i);
             Iterator<ProcessItem> pit = procs.values().iterator();
             while (pit.hasNext()) {
@@ -1126,12 +1164,6 @@ public class RunningState {
                 } else {
                     changed = true;
                     pit.remove();
-                    if (procs.size() == 0) {
-                        if (uidToDelete == null) {
-                            uidToDelete = new ArrayList<Integer>();
-                        }
-                        uidToDelete.add(mServiceProcessesByName.keyAt(i));
-                    }
                     if (pi.mPid != 0) {
                         mServiceProcessesByPid.remove(pi.mPid);
                     }
@@ -1146,18 +1178,15 @@ public class RunningState {
                     }
                 }
             }
-        }
-        
-        if (uidToDelete != null) {
-            for (int i = 0; i < uidToDelete.size(); i++) {
-                int uid = uidToDelete.get(i);
-                mServiceProcessesByName.remove(uid);
+            if (procs.size() == 0) {
+                mServiceProcessesByName.removeAt(i);
             }
         }
 
         if (changed) {
             // First determine an order for the services.
-            ArrayList<ProcessItem> sortedProcesses = new ArrayList<ProcessItem>();
+            final ArrayList<ProcessItem> sortedProcesses = mTmpSortedProcesses;
+            sortedProcesses.clear();
             for (int i=0; i<mServiceProcessesByName.size(); i++) {
                 for (ProcessItem pi : mServiceProcessesByName.valueAt(i).values()) {
                     pi.mIsSystem = false;
@@ -1183,8 +1212,10 @@ public class RunningState {
             
             Collections.sort(sortedProcesses, mServiceProcessComparator);
             
-            ArrayList<BaseItem> newItems = new ArrayList<BaseItem>();
-            ArrayList<MergedItem> newMergedItems = new ArrayList<MergedItem>();
+            final ArrayList<BaseItem> newItems = mTmpItems;
+            final ArrayList<MergedItem> newMergedItems = mTmpMergedItems;
+            newItems.clear();
+            newMergedItems.clear();
             mProcessItems.clear();
             for (int i=0; i<sortedProcesses.size(); i++) {
                 ProcessItem pi = sortedProcesses.get(i);
@@ -1201,7 +1232,7 @@ public class RunningState {
                 
                 // Now add the services running in it.
                 MergedItem mergedItem = null;
-                boolean haveAllMerged = false;
+                boolean haveAllMerged = true;
                 boolean needDivider = false;
                 for (ServiceItem si : pi.mServices.values()) {
                     si.mNeedDivider = needDivider;
@@ -1225,11 +1256,13 @@ public class RunningState {
                         mergedItem.mServices.add(si);
                         si.mMergedItem = mergedItem;
                     }
-                    mergedItem.mProcess = pi;
-                    mergedItem.mOtherProcesses.clear();
-                    for (int mpi=firstProc; mpi<(mProcessItems.size()-1); mpi++) {
-                        mergedItem.mOtherProcesses.add(mProcessItems.get(mpi));
-                    }
+                }
+                // The processes it depends on may change while its services don't, in which
+                // case the existing MergedItem is updated in place.
+                mergedItem.mProcess = pi;
+                mergedItem.mOtherProcesses.clear();
+                for (int mpi=firstProc; mpi<(mProcessItems.size()-1); mpi++) {
+                    mergedItem.mOtherProcesses.add(mProcessItems.get(mpi));
                 }
                 
                 mergedItem.update(context, false);
@@ -1271,9 +1304,17 @@ public class RunningState {
                 }
             }
 
-            synchronized (mLock) {
-                mItems = newItems;
-                mMergedItems = newMergedItems;
+            // Only publish new lists when the rows changed, so that the UI keeps its
+            // current ones and rebinds just the rows whose content changed.
+            if (!newMergedItems.equals(mMergedItems)) {
+                synchronized (mLock) {
+                    mItems = new ArrayList<BaseItem>(newItems);
+                    mMergedItems = new ArrayList<MergedItem>(newMergedItems);
+                }
+            } else if (!newItems.equals(mItems)) {
+                synchronized (mLock) {
+                    mItems = new ArrayList<BaseItem>(newItems);
+                }
             }
         }
         
@@ -1315,7 +1356,10 @@ public class RunningState {
         boolean diffUsers = false;
         try {
             final int numProc = mAllProcessItems.size();
-            int[] pids = new int[numProc];
+            if (mTmpPids.length != numProc) {
+                mTmpPids = new int[numProc];
+            }
+            final int[] pids = mTmpPids;
             for (int i=0; i<numProc; i++) {
                 pids[i] = mAllProcessItems.get(i).mPid;
             }
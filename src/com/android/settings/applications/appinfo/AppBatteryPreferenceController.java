@@ -147,10 +147,21 @@ public class AppBatteryPreferenceController extends BasePreferenceController
             final int dischargeAmount = mBatteryHelper.getStats().getDischargeAmount(
                     BatteryStats.STATS_SINCE_CHARGED);
 
-            final List<BatterySipper> usageList = new ArrayList<>(mBatteryHelper.getUsageList());
+            // Smearing changes the sippers, so work on copies of the helper's ones.
+            final List<BatterySipper> helperUsageList = mBatteryHelper.getUsageList();
+            final List<BatterySipper> usageList = new ArrayList<>(helperUsageList.size());
+            BatterySipper targetSipper = mSipper;
+            for (int i = 0, size = helperUsageList.size(); i < size; i++) {
+                final BatterySipper sipper = helperUsageList.get(i);
+                final BatterySipper copy = BatteryUtils.copyBatterySipper(sipper);
+                if (sipper == mSipper) {
+                    targetSipper = copy;
+                }
+                usageList.add(copy);
+            }
             final double hiddenAmount = mBatteryUtils.removeHiddenBatterySippers(usageList);
             final int percentOfMax = (int) mBatteryUtils.calculateBatteryPercent(
-                    mSipper.totalPowerMah, mBatteryHelper.getTotalPower(), hiddenAmount,
+                    targetSipper.totalPowerMah, mBatteryHelper.getTotalPower(), hiddenAmount,
                     dischargeAmount);
             mBatteryPercent = Utils.formatPercentage(percentOfMax);
             mPreference.setSummary(mContext.getString(R.string.battery_summary, mBatteryPercent));
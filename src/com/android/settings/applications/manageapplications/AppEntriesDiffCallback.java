@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DiffCallback to calculate the difference between the old and new {@link AppEntry} lists of
+ * {@link ManageApplications.ApplicationsAdapter}.
+ *
+ * The entries are updated in place by ApplicationsState, so their contents are compared through
+ * the signatures taken when each list was published.
+ */
+class AppEntriesDiffCallback extends DiffUtil.Callback {
+
+    private final List<AppEntry> mOldEntries;
+    private final int[] mOldSignatures;
+    private final List<AppEntry> mNewEntries;
+    private final int[] mNewSignatures;
+
+    AppEntriesDiffCallback(List<AppEntry> oldEntries, int[] oldSignatures,
+            List<AppEntry> newEntries, int[] newSignatures) {
+        mOldEntries = oldEntries;
+        mOldSignatures = oldSignatures;
+        mNewEntries = newEntries;
+        mNewSignatures = newSignatures;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldEntries.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewEntries.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldEntries.get(oldItemPosition).id == mNewEntries.get(newItemPosition).id;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldEntries.get(oldItemPosition) == mNewEntries.get(newItemPosition)
+                && mOldSignatures[oldItemPosition] == mNewSignatures[newItemPosition];
+    }
+
+    /**
+     * @return the updates from the old to the new entries, or {@code null} if they can't be
+     * calculated and the whole list must be refreshed. Can run on any thread.
+     */
+    static DiffUtil.DiffResult calculateDiff(List<AppEntry> oldEntries, int[] oldSignatures,
+            List<AppEntry> newEntries, int[] newSignatures) {
+        if (oldEntries == null || newEntries == null || oldSignatures == null
+                || oldSignatures.length != oldEntries.size()) {
+            return null;
+        }
+        return DiffUtil.calculateDiff(new AppEntriesDiffCallback(oldEntries, oldSignatures,
+                newEntries, newSignatures));
+    }
+
+    /**
+     * @return the signatures of what the rows of the entries show, or {@code null} if there
+     * are no entries.
+     */
+    static int[] getSignatures(List<AppEntry> entries) {
+        if (entries == null) {
+            return null;
+        }
+        final int size = entries.size();
+        final int[] signatures = new int[size];
+        for (int i = 0; i < size; i++) {
+            signatures[i] = getSignature(entries.get(i));
+        }
+        return signatures;
+    }
+
+    private static int getSignature(AppEntry entry) {
+        return Objects.hash(entry.label, entry.sizeStr, entry.internalSizeStr,
+                entry.externalSizeStr, entry.extraInfo,
+                entry.info != null ? entry.info.enabled : null);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.util.ArrayMap;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the labels of a list of {@link AppEntry}, to find the entries whose label contains a
+ * query, ignoring case, without scanning every label on each keystroke.
+ *
+ * Queries of at least {@link #GRAM_LENGTH} characters only check the entries which contain the
+ * rarest trigram of the query, and a query which extends the previous one only checks the
+ * entries which matched the previous one. Matches keep the order of the list.
+ */
+class AppSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final List<AppEntry> mEntries;
+    private final String[] mLabels;
+    // Ascending positions of the entries whose label contains the trigram.
+    private final ArrayMap<String, int[]> mPostings = new ArrayMap<>();
+
+    private String mLastQuery;
+    private int[] mLastMatches;
+
+    AppSearchIndex(List<AppEntry> entries) {
+        mEntries = entries;
+        final int size = entries.size();
+        mLabels = new String[size];
+        final Map<String, ArrayList<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final String label = normalize(entries.get(i).label);
+            mLabels[i] = label;
+            for (int start = 0; start + GRAM_LENGTH <= label.length(); start++) {
+                final String gram = label.substring(start, start + GRAM_LENGTH);
+                ArrayList<Integer> positions = postings.get(gram);
+                if (positions == null) {
+                    positions = new ArrayList<>();
+                    postings.put(gram, positions);
+                }
+                // A label may contain the same trigram more than once.
+                if (positions.isEmpty() || positions.get(positions.size() - 1) != i) {
+                    positions.add(i);
+                }
+            }
+        }
+        mPostings.ensureCapacity(postings.size());
+        for (Map.Entry<String, ArrayList<Integer>> posting : postings.entrySet()) {
+            final ArrayList<Integer> positions = posting.getValue();
+            final int[] array = new int[positions.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = positions.get(i);
+            }
+            mPostings.put(posting.getKey(), array);
+        }
+    }
+
+    /**
+     * @return the entries the index was built for.
+     */
+    List<AppEntry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * @return the entries whose label contains the query, ignoring case.
+     */
+    ArrayList<AppEntry> filter(CharSequence query) {
+        final String normalizedQuery = normalize(query);
+        final int[] candidates = getCandidates(normalizedQuery);
+        final int[] matches = new int[candidates == null ? mLabels.length : candidates.length];
+        int matchCount = 0;
+        for (int i = 0; i < matches.length; i++) {
+            final int position = candidates == null ? i : candidates[i];
+            if (mLabels[position].contains(normalizedQuery)) {
+                matches[matchCount++] = position;
+            }
+        }
+        mLastQuery = normalizedQuery;
+        mLastMatches = Arrays.copyOf(matches, matchCount);
+
+        final ArrayList<AppEntry> matchedEntries = new ArrayList<>(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            matchedEntries.add(mEntries.get(matches[i]));
+        }
+        return matchedEntries;
+    }
+
+    /**
+     * @return the positions of the entries which may match the query, or {@code null} for all.
+     */
+    private int[] getCandidates(String query) {
+        if (mLastQuery != null && query.startsWith(mLastQuery)) {
+            return mLastMatches;
+        }
+        if (query.length() < GRAM_LENGTH) {
+            return null;
+        }
+        int[] rarest = null;
+        for (int start = 0; start + GRAM_LENGTH <= query.length(); start++) {
+            final int[] positions = mPostings.get(query.substring(start, start + GRAM_LENGTH));
+            if (positions == null) {
+                return new int[0];
+            }
+            if (rarest == null || positions.length < rarest.length) {
+                rarest = positions;
+            }
+        }
+        return rarest;
+    }
+
+    private static String normalize(CharSequence text) {
+        return text == null ? "" : text.toString().toLowerCase();
+    }
+}
@@ -43,6 +43,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageItemInfo;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -54,6 +55,7 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.preference.PreferenceFrameLayout;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.IconDrawableFactory;
 import android.util.Log;
@@ -73,6 +75,7 @@ import android.widget.Spinner;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -89,6 +92,7 @@ import com.android.settings.Settings.UsageAccessSettingsActivity;
 import com.android.settings.Settings.WriteSettingsActivity;
 import com.android.settings.SettingsActivity;
 import com.android.settings.Utils;
+import com.android.settings.applications.AppIconLoader;
 import com.android.settings.applications.AppInfoBase;
 import com.android.settings.applications.AppStateAppOpsBridge.PermissionState;
 import com.android.settings.applications.AppStateBaseBridge;
@@ -999,9 +1003,15 @@ public class ManageApplications extends InstrumentedFragment
         private final AppStateBaseBridge mExtraInfoBridge;
         private final LoadingViewController mLoadingViewController;
         private final IconDrawableFactory mIconDrawableFactory;
+        // Icon requests of the bound rows, cancelled when the rows are recycled.
+        private final ArrayMap<ApplicationViewHolder, AppIconLoader.Callback> mIconRequests =
+                new ArrayMap<>();
 
         private AppFilterItem mAppFilter;
-        private ArrayList<ApplicationsState.AppEntry> mEntries;
+        // Also read by the SearchFilter thread, to calculate the diff of the next entries.
+        private volatile ArrayList<ApplicationsState.AppEntry> mEntries;
+        // What the rows of mEntries showed when it was published, see AppEntriesDiffCallback.
+        private volatile int[] mEntrySignatures;
         private ArrayList<ApplicationsState.AppEntry> mOriginalEntries;
         private boolean mResumed;
         private int mLastSortMode = -1;
@@ -1153,6 +1163,9 @@ public class ManageApplications extends InstrumentedFragment
             if (mExtraInfoBridge != null) {
                 mExtraInfoBridge.release();
             }
+            for (int i = mIconRequests.size() - 1; i >= 0; i--) {
+                cancelIconRequest(mIconRequests.keyAt(i));
+            }
         }
 
         public void rebuild(int sort) {
@@ -1296,29 +1309,30 @@ public class ManageApplications extends InstrumentedFragment
                     filterType == FILTER_APPS_POWER_WHITELIST_ALL) {
                 entries = removeDuplicateIgnoringUser(entries);
             }
-            mEntries = entries;
             mOriginalEntries = entries;
-            notifyDataSetChanged();
-            if (getItemCount() == 0) {
+            final CharSequence query = mManageApplications.mSearchView != null
+                    && mManageApplications.mSearchView.isVisibleToUser()
+                    ? mManageApplications.mSearchView.getQuery() : null;
+            final boolean hasQuery = !TextUtils.isEmpty(query);
+            if (mEntries == null || entries == null) {
+                // Nothing to diff against, show the entries right away.
+                setEntries(entries, AppEntriesDiffCallback.getSignatures(entries),
+                        null /* diffResult */);
+                if (hasQuery) {
+                    filterSearch(query.toString());
+                }
+            } else {
+                // The entries are diffed against the shown ones off the main thread, and
+                // filtered by the query if any.
+                filterSearch(hasQuery ? query.toString() : "");
+            }
+            final int itemCount = entries == null ? 0 : entries.size() + (hasExtraView() ? 1 : 0);
+            if (itemCount == 0) {
                 mManageApplications.mRecyclerView.setVisibility(View.GONE);
                 mManageApplications.mEmptyView.setVisibility(View.VISIBLE);
             } else {
                 mManageApplications.mEmptyView.setVisibility(View.GONE);
                 mManageApplications.mRecyclerView.setVisibility(View.VISIBLE);
-
-                if (mManageApplications.mSearchView != null
-                        && mManageApplications.mSearchView.isVisibleToUser()) {
-                    final CharSequence query = mManageApplications.mSearchView.getQuery();
-                    if (!TextUtils.isEmpty(query)) {
-                        filterSearch(query.toString());
-                    }
-                }
-            }
-            // Restore the last scroll position if the number of entries added so far is bigger than
-            // it.
-            if (mLastIndex != -1 && getItemCount() > mLastIndex) {
-                mManageApplications.mRecyclerView.getLayoutManager().scrollToPosition(mLastIndex);
-                mLastIndex = -1;
             }
 
             if (mSession.getAllApps().size() != 0
@@ -1334,6 +1348,27 @@ public class ManageApplications extends InstrumentedFragment
             mManageApplications.setHasInstant(mState.haveInstantApps());
         }
 
+        /**
+         * Shows the entries, only notifying the rows which moved or changed if there is a
+         * {@param diffResult} from the shown entries.
+         */
+        private void setEntries(ArrayList<ApplicationsState.AppEntry> entries, int[] signatures,
+                DiffUtil.DiffResult diffResult) {
+            mEntries = entries;
+            mEntrySignatures = signatures;
+            if (diffResult == null) {
+                notifyDataSetChanged();
+            } else {
+                diffResult.dispatchUpdatesTo(this);
+            }
+            // Restore the last scroll position if the number of entries added so far is bigger than
+            // it.
+            if (mLastIndex != -1 && getItemCount() > mLastIndex) {
+                mManageApplications.mRecyclerView.getLayoutManager().scrollToPosition(mLastIndex);
+                mLastIndex = -1;
+            }
+        }
+
         @VisibleForTesting
         void updateLoading() {
             final boolean appLoaded = mHasReceivedLoadEntries && mSession.getAllApps().size() != 0;
@@ -1467,8 +1502,7 @@ public class ManageApplications extends InstrumentedFragment
                     holder.setTitle(entry.label);
                     mState.ensureLabelDescription(entry);
                     holder.itemView.setContentDescription(entry.labelDescription);
-                    mState.ensureIcon(entry);
-                    holder.setIcon(entry.icon);
+                    bindIcon(holder, entry);
                     updateSummary(holder, entry);
                     updateSwitch(holder, entry);
                     holder.updateDisableView(entry.info);
@@ -1478,6 +1512,52 @@ public class ManageApplications extends InstrumentedFragment
             holder.itemView.setOnClickListener(mManageApplications);
         }
 
+        @Override
+        public void onViewRecycled(ApplicationViewHolder holder) {
+            cancelIconRequest(holder);
+        }
+
+        private void bindIcon(ApplicationViewHolder holder, AppEntry entry) {
+            cancelIconRequest(holder);
+            if (!entry.mounted) {
+                // The icon of an app on an unmounted volume is loaded from its apk.
+                mState.ensureIcon(entry);
+            }
+            final AppIconLoader iconLoader = AppIconLoader.getInstance(mContext);
+            if (entry.icon == null) {
+                entry.icon = iconLoader.getCachedIcon(entry.info);
+            }
+            if (entry.icon != null) {
+                holder.setIcon(entry.icon);
+                return;
+            }
+            // Load the icon off the main thread, the rows bound last are loaded first.
+            holder.setIcon((Drawable) null);
+            final AppIconLoader.Callback callback = new AppIconLoader.Callback() {
+                @Override
+                public void onIconLoaded(ApplicationInfo info, Drawable icon) {
+                    synchronized (entry) {
+                        if (entry.icon == null) {
+                            entry.icon = icon;
+                        }
+                    }
+                    if (mIconRequests.get(holder) == this) {
+                        mIconRequests.remove(holder);
+                        holder.setIcon(icon);
+                    }
+                }
+            };
+            mIconRequests.put(holder, callback);
+            iconLoader.requestIcon(entry.info, callback);
+        }
+
+        private void cancelIconRequest(ApplicationViewHolder holder) {
+            final AppIconLoader.Callback callback = mIconRequests.remove(holder);
+            if (callback != null) {
+                AppIconLoader.getInstance(mContext).cancelRequest(callback);
+            }
+        }
+
         private void updateSummary(ApplicationViewHolder holder, AppEntry entry) {
             switch (mManageApplications.mListType) {
                 case LIST_TYPE_NOTIFICATION:
@@ -1578,30 +1658,60 @@ public class ManageApplications extends InstrumentedFragment
          * Item that does not contains the specified substring will be removed from the list.</p>
          */
         private class SearchFilter extends Filter {
+            // Only used on the filtering thread, rebuilt when the entries change.
+            private AppSearchIndex mSearchIndex;
+
             @WorkerThread
             @Override
             protected FilterResults performFiltering(CharSequence query) {
+                final ArrayList<ApplicationsState.AppEntry> originalEntries = mOriginalEntries;
                 final ArrayList<ApplicationsState.AppEntry> matchedEntries;
                 if (TextUtils.isEmpty(query)) {
-                    matchedEntries = mOriginalEntries;
+                    matchedEntries = originalEntries;
                 } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
+                    if (mSearchIndex == null || mSearchIndex.getEntries() != originalEntries) {
+                        mSearchIndex = new AppSearchIndex(originalEntries);
                     }
+                    matchedEntries = mSearchIndex.filter(query);
                 }
+                // Diff against the shown entries here, it's too slow for the main thread.
+                final ArrayList<ApplicationsState.AppEntry> shownEntries = mEntries;
+                final int[] shownSignatures = mEntrySignatures;
+                final int[] signatures = AppEntriesDiffCallback.getSignatures(matchedEntries);
                 final FilterResults results = new FilterResults();
-                results.values = matchedEntries;
-                results.count = matchedEntries.size();
+                results.values = new FilteredEntries(matchedEntries, signatures, shownEntries,
+                        shownSignatures, AppEntriesDiffCallback.calculateDiff(shownEntries,
+                                shownSignatures, matchedEntries, signatures));
+                results.count = matchedEntries == null ? 0 : matchedEntries.size();
                 return results;
             }
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
-                mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                final FilteredEntries filteredEntries = (FilteredEntries) results.values;
+                // The diff is only valid against the entries it was calculated from.
+                final boolean diffValid = mEntries == filteredEntries.mBaseEntries
+                        && mEntrySignatures == filteredEntries.mBaseSignatures;
+                setEntries(filteredEntries.mEntries, filteredEntries.mSignatures,
+                        diffValid ? filteredEntries.mDiffResult : null);
+            }
+        }
+
+        private static class FilteredEntries {
+            private final ArrayList<ApplicationsState.AppEntry> mEntries;
+            private final int[] mSignatures;
+            private final ArrayList<ApplicationsState.AppEntry> mBaseEntries;
+            private final int[] mBaseSignatures;
+            private final DiffUtil.DiffResult mDiffResult;
+
+            FilteredEntries(ArrayList<ApplicationsState.AppEntry> entries, int[] signatures,
+                    ArrayList<ApplicationsState.AppEntry> baseEntries, int[] baseSignatures,
+                    DiffUtil.DiffResult diffResult) {
+                mEntries = entries;
+                mSignatures = signatures;
+                mBaseEntries = baseEntries;
+                mBaseSignatures = baseSignatures;
+                mDiffResult = diffResult;
             }
         }
     }
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the metadata extracted by {@link PreferenceXmlParserUtils#extractMetadata} so that
+ * preference xml is parsed only once per build, package version, set of resource overlays and
+ * resource configuration.
+ *
+ * The cache is kept in memory and persisted to a compact binary file in the cache directory,
+ * which is memory-mapped and decoded lazily per xml resource on the next process start. The
+ * file is discarded as soon as any of them changes.
+ */
+class PreferenceXmlMetadataCache {
+
+    private static final String TAG = "PrefXmlMetadataCache";
+
+    @VisibleForTesting
+    static final String CACHE_FILE_NAME = "preference_xml_metadata.bin";
+
+    private static final int MAGIC = 0x50584d43; // "PXMC"
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+
+    private static PreferenceXmlMetadataCache sInstance;
+    private static String sPackageKey;
+    private static int sPackageKeyAssetsSeq;
+
+    private final AtomicFile mFile;
+    // Entries extracted in this process, or already decoded from the file.
+    private final Map<Long, List<Bundle>> mEntries = new ArrayMap<>();
+    // Offsets of the entries in the mapped file which are not decoded yet.
+    private final Map<Long, Integer> mMappedOffsets = new ArrayMap<>();
+    private ByteBuffer mMappedBuffer;
+    private String mCacheKey;
+    private boolean mLoaded;
+    private boolean mWriteScheduled;
+
+    static synchronized PreferenceXmlMetadataCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PreferenceXmlMetadataCache(
+                    new File(context.getApplicationContext().getCacheDir(), CACHE_FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PreferenceXmlMetadataCache(File file) {
+        mFile = new AtomicFile(file);
+    }
+
+    /**
+     * @return a copy of the cached metadata of the xml for the given flags, or {@code null} if
+     * it has not been extracted yet for the current build and configuration.
+     */
+    synchronized List<Bundle> get(Context context, int xmlResId, int flags) {
+        ensureCacheKey(getCacheKey(context));
+        final long entryKey = getEntryKey(xmlResId, flags);
+        List<Bundle> metadata = mEntries.get(entryKey);
+        if (metadata == null) {
+            metadata = decodeMappedEntry(entryKey);
+            if (metadata == null) {
+                return null;
+            }
+            mEntries.put(entryKey, metadata);
+        }
+        return copy(metadata);
+    }
+
+    /**
+     * Stores the metadata of the xml for the given flags, and schedules a write to disk.
+     */
+    synchronized void put(Context context, int xmlResId, int flags, List<Bundle> metadata) {
+        ensureCacheKey(getCacheKey(context));
+        mEntries.put(getEntryKey(xmlResId, flags), copy(metadata));
+        if (!mWriteScheduled) {
+            mWriteScheduled = true;
+            ThreadUtils.postOnBackgroundThread(this::writeToDisk);
+        }
+    }
+
+    @VisibleForTesting
+    static String getCacheKey(Context context) {
+        // Only the parts of the configuration which can select different xml or strings.
+        final Configuration config = context.getResources().getConfiguration();
+        return getPackageKey(context, config.assetsSeq)
+                + "|" + config.getLocales().toLanguageTags()
+                + "|" + config.mcc + "-" + config.mnc
+                + "|" + config.uiMode
+                + "|" + config.screenLayout
+                + "|" + config.smallestScreenWidthDp
+                + "|" + config.densityDpi;
+    }
+
+    /**
+     * @return the part of the cache key identifying the resources of this build of the package,
+     * recomputed only when the assets change.
+     */
+    private static synchronized String getPackageKey(Context context, int assetsSeq) {
+        if (sPackageKey == null || sPackageKeyAssetsSeq != assetsSeq) {
+            sPackageKey = buildPackageKey(context);
+            sPackageKeyAssetsSeq = assetsSeq;
+        }
+        return sPackageKey;
+    }
+
+    @VisibleForTesting
+    static String buildPackageKey(Context context) {
+        // The fingerprint is often left unchanged across builds of custom ROMs, the build date is
+        // not, see SlicesDatabaseHelper#getBuildTag().
+        final StringBuilder key = new StringBuilder(Build.DATE);
+        try {
+            final PackageInfo packageInfo = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0 /* flags */);
+            key.append('|').append(packageInfo.getLongVersionCode())
+                    .append('|').append(packageInfo.lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Cannot find package info", e);
+        }
+        // The resource overlays enabled for the package, and the version of their apks.
+        final String[] resourceDirs = context.getApplicationInfo().resourceDirs;
+        if (resourceDirs != null) {
+            for (String resourceDir : resourceDirs) {
+                key.append('|').append(resourceDir)
+                        .append('@').append(new File(resourceDir).lastModified());
+            }
+        }
+        return key.toString();
+    }
+
+    private void ensureCacheKey(String cacheKey) {
+        if (!mLoaded) {
+            mLoaded = true;
+            mCacheKey = cacheKey;
+            mapFile();
+        } else if (!cacheKey.equals(mCacheKey)) {
+            Log.d(TAG, "Build or configuration changed, dropping cached metadata");
+            mCacheKey = cacheKey;
+            mEntries.clear();
+            mMappedOffsets.clear();
+            mMappedBuffer = null;
+        }
+    }
+
+    private void mapFile() {
+        final File baseFile = mFile.getBaseFile();
+        if (!baseFile.exists()) {
+            return;
+        }
+        try (FileInputStream in = new FileInputStream(baseFile);
+             FileChannel channel = in.getChannel()) {
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !mCacheKey.equals(readString(buffer))) {
+                Log.d(TAG, "Discarding stale metadata cache");
+                mFile.delete();
+                return;
+            }
+            final int entryCount = buffer.getInt();
+            for (int i = 0; i < entryCount; i++) {
+                final long entryKey = buffer.getLong();
+                final int length = buffer.getInt();
+                mMappedOffsets.put(entryKey, buffer.position());
+                buffer.position(buffer.position() + length);
+            }
+            mMappedBuffer = buffer;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read metadata cache", e);
+            mMappedOffsets.clear();
+            mFile.delete();
+        }
+    }
+
+    private List<Bundle> decodeMappedEntry(long entryKey) {
+        final Integer offset = mMappedOffsets.remove(entryKey);
+        if (offset == null || mMappedBuffer == null) {
+            return null;
+        }
+        final ByteBuffer buffer = mMappedBuffer.duplicate();
+        buffer.position(offset);
+        try {
+            final int bundleCount = buffer.getInt();
+            final List<Bundle> metadata = new ArrayList<>(bundleCount);
+            for (int i = 0; i < bundleCount; i++) {
+                final Bundle bundle = new Bundle();
+                final int valueCount = buffer.getInt();
+                for (int j = 0; j < valueCount; j++) {
+                    final String key = readString(buffer);
+                    final byte type = buffer.get();
+                    switch (type) {
+                        case TYPE_NULL:
+                            bundle.putString(key, null);
+                            break;
+                        case TYPE_STRING:
+                            bundle.putString(key, readString(buffer));
+                            break;
+                        case TYPE_INT:
+                            bundle.putInt(key, buffer.getInt());
+                            break;
+                        case TYPE_BOOLEAN:
+                            bundle.putBoolean(key, buffer.get() != 0);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown type " + type);
+                    }
+                }
+                metadata.add(bundle);
+            }
+            return metadata;
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            Log.w(TAG, "Corrupted metadata cache entry", e);
+            return null;
+        }
+    }
+
+    @VisibleForTesting
+    void writeToDisk() {
+        final String cacheKey;
+        final Map<Long, List<Bundle>> entries = new ArrayMap<>();
+        synchronized (this) {
+            mWriteScheduled = false;
+            cacheKey = mCacheKey;
+            // Decode everything left in the mapped file so that nothing is lost on rewrite.
+            for (Long entryKey : new ArrayList<>(mMappedOffsets.keySet())) {
+                final List<Bundle> metadata = decodeMappedEntry(entryKey);
+                if (metadata != null) {
+                    mEntries.put(entryKey, metadata);
+                }
+            }
+            mMappedBuffer = null;
+            for (Map.Entry<Long, List<Bundle>> entry : mEntries.entrySet()) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        FileOutputStream out = null;
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            writeString(data, cacheKey);
+            data.writeInt(entries.size());
+            final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+            final DataOutputStream entryData = new DataOutputStream(entryBytes);
+            for (Map.Entry<Long, List<Bundle>> entry : entries.entrySet()) {
+                entryBytes.reset();
+                writeEntry(entryData, entry.getValue());
+                entryData.flush();
+                data.writeLong(entry.getKey());
+                data.writeInt(entryBytes.size());
+                entryBytes.writeTo(data);
+            }
+            data.flush();
+
+            out = mFile.startWrite();
+            bytes.writeTo(out);
+            mFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write metadata cache", e);
+            mFile.failWrite(out);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, List<Bundle> metadata)
+            throws IOException {
+        out.writeInt(metadata.size());
+        for (Bundle bundle : metadata) {
+            out.writeInt(bundle.size());
+            for (String key : bundle.keySet()) {
+                writeString(out, key);
+                final Object value = bundle.get(key);
+                if (value == null) {
+                    out.writeByte(TYPE_NULL);
+                } else if (value instanceof String) {
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, (String) value);
+                } else if (value instanceof Integer) {
+                    out.writeByte(TYPE_INT);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Boolean) {
+                    out.writeByte(TYPE_BOOLEAN);
+                    out.writeByte((Boolean) value ? 1 : 0);
+                } else {
+                    throw new IOException("Unsupported metadata type for " + key);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long getEntryKey(int xmlResId, int flags) {
+        return ((long) xmlResId << 32) | (flags & 0xffffffffL);
+    }
+
+    private static List<Bundle> copy(List<Bundle> metadata) {
+        final List<Bundle> result = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            result.add(new Bundle(bundle));
+        }
+        return result;
+    }
+}
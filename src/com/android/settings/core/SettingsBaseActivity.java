@@ -62,6 +62,8 @@ public class SettingsBaseActivity extends FragmentActivity {
 
     private final PackageReceiver mPackageReceiver = new PackageReceiver();
     private final List<CategoryListener> mCategoryListeners = new ArrayList<>();
+    // Packages changed since the last categories update, guarded by itself.
+    private final Set<String> mChangedPackages = new ArraySet<>();
     private int mCategoriesUpdateTaskCount;
 
     @Override
@@ -234,7 +236,12 @@ public class SettingsBaseActivity extends FragmentActivity {
         @Override
         protected Set<String> doInBackground(Boolean... params) {
             mPreviousTileMap = mCategoryManager.getTileByComponentMap();
-            mCategoryManager.reloadAllCategories(mContext);
+            final Set<String> changedPackages;
+            synchronized (mChangedPackages) {
+                changedPackages = new ArraySet<>(mChangedPackages);
+                mChangedPackages.clear();
+            }
+            mCategoryManager.reloadCategories(mContext, changedPackages);
             mCategoryManager.updateCategoryFromBlacklist(sTileBlacklist);
             return getChangedCategories(params[0]);
         }
@@ -291,6 +298,13 @@ public class SettingsBaseActivity extends FragmentActivity {
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final String packageName =
+                    intent.getData() != null ? intent.getData().getSchemeSpecificPart() : null;
+            if (packageName != null) {
+                synchronized (mChangedPackages) {
+                    mChangedPackages.add(packageName);
+                }
+            }
             updateCategories(true /* fromBroadcast */);
         }
     }
@@ -22,6 +22,7 @@ import android.util.ArraySet;
 import android.util.Log;
 import android.util.Pair;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settingslib.applications.InterestingConfigChanges;
@@ -32,7 +33,10 @@ import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.drawer.TileUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -46,13 +50,14 @@ public class CategoryManager {
     private static CategoryManager sInstance;
     private final InterestingConfigChanges mInterestingConfigChanges;
 
-    // Tile cache (key: <packageName, activityName>, value: tile)
-    private final Map<Pair<String, String>, Tile> mTileByComponentCache;
+    // Serializes reloads. Readers never take it once a snapshot is published.
+    private final Object mReloadLock = new Object();
 
-    // Tile cache (key: category key, value: category)
-    private final Map<String, DashboardCategory> mCategoryByKeyMap;
+    // Tile cache (key: <packageName, activityName>, value: tile), only used under mReloadLock.
+    private final Map<Pair<String, String>, Tile> mTileByComponentCache;
 
-    private List<DashboardCategory> mCategories;
+    // Published categories. A snapshot is never modified, changes publish a new one.
+    private volatile Snapshot mSnapshot;
 
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
@@ -63,53 +68,83 @@ public class CategoryManager {
 
     CategoryManager(Context context) {
         mTileByComponentCache = new ArrayMap<>();
-        mCategoryByKeyMap = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
-
-        return mCategoryByKeyMap.get(categoryKey);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        return getSnapshot(context).mCategoryByKeyMap.get(categoryKey);
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
-        tryInitCategories(context);
-        return mCategories;
+    public List<DashboardCategory> getCategories(Context context) {
+        return getSnapshot(context).mCategories;
     }
 
-    public synchronized void reloadAllCategories(Context context) {
-        final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
-                context.getResources());
-        mCategories = null;
-        tryInitCategories(context, forceClearCache);
+    public void reloadAllCategories(Context context) {
+        reloadCategories(context, null /* changedPackages */);
     }
 
-    public synchronized void updateCategoryFromBlacklist(Set<ComponentName> tileBlacklist) {
-        if (mCategories == null) {
-            Log.w(TAG, "Category is null, skipping blacklist update");
-            return;
+    /**
+     * Reloads all categories and publishes them at once. Readers keep getting the previous
+     * categories until then.
+     *
+     * @param changedPackages packages whose cached tiles are dropped before reloading, so that
+     *                        tiles of removed or updated packages are not reused. Tiles of other
+     *                        packages are kept unless the configuration changed.
+     */
+    public void reloadCategories(Context context, @Nullable Set<String> changedPackages) {
+        synchronized (mReloadLock) {
+            final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
+                    context.getResources());
+            if (forceClearCache) {
+                mTileByComponentCache.clear();
+            } else if (changedPackages != null && !changedPackages.isEmpty()) {
+                evictCachedTiles(mTileByComponentCache, changedPackages);
+            }
+            final boolean firstLoading = mSnapshot == null;
+            mSnapshot = loadSnapshot(context);
+            if (firstLoading) {
+                logTiles(context);
+            }
         }
-        for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
-            for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
-                if (tileBlacklist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
-                }
+    }
+
+    public void updateCategoryFromBlacklist(Set<ComponentName> tileBlacklist) {
+        synchronized (mReloadLock) {
+            final Snapshot snapshot = mSnapshot;
+            if (snapshot == null) {
+                Log.w(TAG, "Category is null, skipping blacklist update");
+                return;
+            }
+            // Copy only the categories which lose tiles, the others are shared with the
+            // previous snapshot.
+            final Map<DashboardCategory, DashboardCategory> filteredCategories =
+                    new IdentityHashMap<>();
+            final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+            for (Entry<String, DashboardCategory> entry : snapshot.mCategoryByKeyMap.entrySet()) {
+                categoryByKeyMap.put(entry.getKey(),
+                        filterTiles(entry.getValue(), tileBlacklist, filteredCategories));
+            }
+            final List<DashboardCategory> categories =
+                    new ArrayList<>(snapshot.mCategories.size());
+            for (DashboardCategory category : snapshot.mCategories) {
+                categories.add(filterTiles(category, tileBlacklist, filteredCategories));
+            }
+            if (!filteredCategories.isEmpty()) {
+                mSnapshot = new Snapshot(categories, categoryByKeyMap);
             }
         }
     }
 
     /** Return the current tile map */
-    public synchronized Map<ComponentName, Tile> getTileByComponentMap() {
+    public Map<ComponentName, Tile> getTileByComponentMap() {
         final Map<ComponentName, Tile> result = new ArrayMap<>();
-        if (mCategories == null) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
             Log.w(TAG, "Category is null, no tiles");
             return result;
         }
-        mCategories.forEach(category -> {
+        snapshot.mCategories.forEach(category -> {
             for (int i = 0; i < category.getTilesCount(); i++) {
                 final Tile tile = category.getTile(i);
                 result.put(tile.getIntent().getComponent(), tile);
@@ -118,6 +153,15 @@ public class CategoryManager {
         return result;
     }
 
+    @VisibleForTesting
+    void setCategories(List<DashboardCategory> categories) {
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
+        }
+        mSnapshot = new Snapshot(new ArrayList<>(categories), categoryByKeyMap);
+    }
+
     private void logTiles(Context context) {
         if (DEBUG) {
             getTileByComponentMap().forEach((component, tile) -> {
@@ -127,34 +171,72 @@ public class CategoryManager {
         }
     }
 
-    private synchronized void tryInitCategories(Context context) {
-        // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+    private Snapshot getSnapshot(Context context) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (mReloadLock) {
+            // Keep cached tiles by default. The cache is only invalidated when
+            // InterestingConfigChange happens.
+            if (mSnapshot == null) {
+                mSnapshot = loadSnapshot(context);
+                logTiles(context);
+            }
+            return mSnapshot;
+        }
+    }
+
+    private Snapshot loadSnapshot(Context context) {
+        final List<DashboardCategory> categories =
+                TileUtils.getCategories(context, mTileByComponentCache);
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
+        }
+        backwardCompatCleanupForCategory(mTileByComponentCache, categoryByKeyMap);
+        sortCategories(context, categoryByKeyMap);
+        filterDuplicateTiles(categoryByKeyMap);
+        return new Snapshot(categories, categoryByKeyMap);
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
-        if (mCategories == null) {
-            final boolean firstLoading = mCategoryByKeyMap.isEmpty();
-            if (forceClearCache) {
-                mTileByComponentCache.clear();
-            }
-            mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
-            for (DashboardCategory category : mCategories) {
-                mCategoryByKeyMap.put(category.key, category);
+    @VisibleForTesting
+    static void evictCachedTiles(Map<Pair<String, String>, Tile> tileByComponentCache,
+            Set<String> packageNames) {
+        final Iterator<Pair<String, String>> iterator = tileByComponentCache.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (packageNames.contains(iterator.next().first)) {
+                iterator.remove();
             }
-            backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
-            sortCategories(context, mCategoryByKeyMap);
-            filterDuplicateTiles(mCategoryByKeyMap);
-            if (firstLoading) {
-                logTiles(context);
+        }
+    }
+
+    private static DashboardCategory filterTiles(DashboardCategory category,
+            Set<ComponentName> tileBlacklist,
+            Map<DashboardCategory, DashboardCategory> filteredCategories) {
+        final DashboardCategory filtered = filteredCategories.get(category);
+        if (filtered != null) {
+            return filtered;
+        }
+        final int count = category.getTilesCount();
+        for (int i = 0; i < count; i++) {
+            if (tileBlacklist.contains(category.getTile(i).getIntent().getComponent())) {
+                final DashboardCategory copy = new DashboardCategory(category.key);
+                for (int j = 0; j < count; j++) {
+                    final Tile tile = category.getTile(j);
+                    if (!tileBlacklist.contains(tile.getIntent().getComponent())) {
+                        copy.addTile(tile);
+                    }
+                }
+                filteredCategories.put(category, copy);
+                return copy;
             }
         }
+        return category;
     }
 
     @VisibleForTesting
-    synchronized void backwardCompatCleanupForCategory(
+    void backwardCompatCleanupForCategory(
             Map<Pair<String, String>, Tile> tileByComponentCache,
             Map<String, DashboardCategory> categoryByKeyMap) {
         // A package can use a) CategoryKey, b) old category keys, c) both.
@@ -212,7 +294,7 @@ public class CategoryManager {
      * scan.
      */
     @VisibleForTesting
-    synchronized void sortCategories(Context context,
+    void sortCategories(Context context,
             Map<String, DashboardCategory> categoryByKeyMap) {
         for (Entry<String, DashboardCategory> categoryEntry : categoryByKeyMap.entrySet()) {
             categoryEntry.getValue().sortTiles(context.getPackageName());
@@ -224,7 +306,7 @@ public class CategoryManager {
      * same intent for ActivityTile, and also the ones having the same description for ProviderTile.
      */
     @VisibleForTesting
-    synchronized void filterDuplicateTiles(Map<String, DashboardCategory> categoryByKeyMap) {
+    void filterDuplicateTiles(Map<String, DashboardCategory> categoryByKeyMap) {
         for (Entry<String, DashboardCategory> categoryEntry : categoryByKeyMap.entrySet()) {
             final DashboardCategory category = categoryEntry.getValue();
             final int count = category.getTilesCount();
@@ -250,4 +332,15 @@ public class CategoryManager {
             }
         }
     }
+
+    private static class Snapshot {
+        private final List<DashboardCategory> mCategories;
+        private final Map<String, DashboardCategory> mCategoryByKeyMap;
+
+        Snapshot(List<DashboardCategory> categories,
+                Map<String, DashboardCategory> categoryByKeyMap) {
+            mCategories = Collections.unmodifiableList(categories);
+            mCategoryByKeyMap = categoryByKeyMap;
+        }
+    }
 }
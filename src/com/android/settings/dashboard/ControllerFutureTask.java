@@ -18,19 +18,57 @@ package com.android.settings.dashboard;
 import com.android.settingslib.core.AbstractPreferenceController;
 
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *  {@link FutureTask} of the Controller.
+ * A {@link FutureTask} wrapping a {@link ControllerTask}, ordered by priority so that controllers
+ * near the top of the screen are updated first by {@link ControllerTaskExecutor}.
  */
-public class ControllerFutureTask extends FutureTask<Void> {
+public class ControllerFutureTask extends FutureTask<Void>
+        implements Comparable<ControllerFutureTask> {
+    /** Priority used when the position of the preference is unknown. */
+    public static final int PRIORITY_DEFAULT = Integer.MAX_VALUE;
+
+    private static final AtomicLong sSequence = new AtomicLong();
+
+    private final ControllerTask mTask;
     private final AbstractPreferenceController mController;
+    private final int mPriority;
+    private final long mSequence;
 
     public ControllerFutureTask(ControllerTask task, Void result) {
+        this(task, result, PRIORITY_DEFAULT);
+    }
+
+    /**
+     * @param priority lower value runs first, typically the order of the preference on screen.
+     */
+    public ControllerFutureTask(ControllerTask task, Void result, int priority) {
         super(task, result);
+        mTask = task;
         mController = task.getController();
+        mPriority = priority;
+        mSequence = sSequence.getAndIncrement();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        // Also drop the pending main thread update, if any has been posted already.
+        mTask.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public int compareTo(ControllerFutureTask other) {
+        final int result = Integer.compare(mPriority, other.mPriority);
+        return result != 0 ? result : Long.compare(mSequence, other.mSequence);
     }
 
     AbstractPreferenceController getController() {
         return mController;
     }
+
+    int getPriority() {
+        return mPriority;
+    }
 }
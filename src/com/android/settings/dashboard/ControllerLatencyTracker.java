@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.os.SystemClock;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Always-on latency histograms of {@link AbstractPreferenceController#isAvailable()},
+ * {@link AbstractPreferenceController#displayPreference(PreferenceScreen)} and
+ * {@link AbstractPreferenceController#updateState(Preference)}, per controller class.
+ *
+ * Recording is lock-free: each histogram is a fixed set of atomic bucket counters. The
+ * histograms are dumped as json by {@link com.android.settings.SettingsDumpService}.
+ */
+public class ControllerLatencyTracker {
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({OP_IS_AVAILABLE, OP_DISPLAY_PREFERENCE, OP_UPDATE_STATE})
+    public @interface Operation {}
+
+    public static final int OP_IS_AVAILABLE = 0;
+    public static final int OP_DISPLAY_PREFERENCE = 1;
+    public static final int OP_UPDATE_STATE = 2;
+
+    private static final String[] OPERATION_NAMES =
+            {"is_available", "display_preference", "update_state"};
+
+    /**
+     * Upper bounds of the buckets in microseconds, the last bucket holds everything above.
+     */
+    @VisibleForTesting
+    static final long[] BUCKET_UPPER_BOUNDS_US =
+            {500, 1000, 2000, 4000, 8000, 16000, 32000, 64000, 128000, 256000, 512000, 1024000};
+
+    private static final ControllerLatencyTracker sInstance = new ControllerLatencyTracker();
+
+    private final Map<String, Histogram[]> mHistograms = new ConcurrentHashMap<>();
+
+    public static ControllerLatencyTracker getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ControllerLatencyTracker() {
+    }
+
+    /**
+     * Calls {@link AbstractPreferenceController#isAvailable()} and records how long it took.
+     */
+    public boolean isAvailable(AbstractPreferenceController controller) {
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        final boolean available = controller.isAvailable();
+        record(controller, OP_IS_AVAILABLE, SystemClock.elapsedRealtimeNanos() - startTime);
+        return available;
+    }
+
+    /**
+     * Calls {@link AbstractPreferenceController#displayPreference(PreferenceScreen)} and records
+     * how long it took.
+     */
+    public void displayPreference(AbstractPreferenceController controller,
+            PreferenceScreen screen) {
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        controller.displayPreference(screen);
+        record(controller, OP_DISPLAY_PREFERENCE, SystemClock.elapsedRealtimeNanos() - startTime);
+    }
+
+    /**
+     * Calls {@link AbstractPreferenceController#updateState(Preference)} and records how long it
+     * took.
+     */
+    public void updateState(AbstractPreferenceController controller, Preference preference) {
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        controller.updateState(preference);
+        record(controller, OP_UPDATE_STATE, SystemClock.elapsedRealtimeNanos() - startTime);
+    }
+
+    @VisibleForTesting
+    void record(AbstractPreferenceController controller, @Operation int operation,
+            long elapsedNanos) {
+        final String name = controller.getClass().getName();
+        Histogram[] histograms = mHistograms.get(name);
+        if (histograms == null) {
+            histograms = new Histogram[OPERATION_NAMES.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+            final Histogram[] existing = mHistograms.putIfAbsent(name, histograms);
+            if (existing != null) {
+                histograms = existing;
+            }
+        }
+        histograms[operation].record(elapsedNanos / 1000);
+    }
+
+    /**
+     * @return the histograms of every controller class which ran so far, sorted by class name.
+     */
+    public JSONObject dump() throws JSONException {
+        final JSONArray bounds = new JSONArray();
+        for (long bound : BUCKET_UPPER_BOUNDS_US) {
+            bounds.put(bound);
+        }
+        final JSONObject controllers = new JSONObject();
+        for (Map.Entry<String, Histogram[]> entry : new TreeMap<>(mHistograms).entrySet()) {
+            final JSONObject operations = new JSONObject();
+            final Histogram[] histograms = entry.getValue();
+            for (int i = 0; i < histograms.length; i++) {
+                if (histograms[i].getCount() > 0) {
+                    operations.put(OPERATION_NAMES[i], histograms[i].toJson());
+                }
+            }
+            controllers.put(entry.getKey(), operations);
+        }
+        final JSONObject obj = new JSONObject();
+        obj.put("bucket_upper_bounds_us", bounds);
+        obj.put("controllers", controllers);
+        return obj;
+    }
+
+    @VisibleForTesting
+    static class Histogram {
+        private final AtomicLongArray mBuckets =
+                new AtomicLongArray(BUCKET_UPPER_BOUNDS_US.length + 1);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalUs = new AtomicLong();
+        private final AtomicLong mMaxUs = new AtomicLong();
+
+        void record(long elapsedUs) {
+            mBuckets.incrementAndGet(getBucket(elapsedUs));
+            mCount.incrementAndGet();
+            mTotalUs.addAndGet(elapsedUs);
+            long max = mMaxUs.get();
+            while (elapsedUs > max && !mMaxUs.compareAndSet(max, elapsedUs)) {
+                max = mMaxUs.get();
+            }
+        }
+
+        long getCount() {
+            return mCount.get();
+        }
+
+        long getBucketCount(int bucket) {
+            return mBuckets.get(bucket);
+        }
+
+        JSONObject toJson() throws JSONException {
+            final JSONArray buckets = new JSONArray();
+            for (int i = 0; i < mBuckets.length(); i++) {
+                buckets.put(mBuckets.get(i));
+            }
+            final JSONObject obj = new JSONObject();
+            obj.put("count", mCount.get());
+            obj.put("total_us", mTotalUs.get());
+            obj.put("max_us", mMaxUs.get());
+            obj.put("buckets", buckets);
+            return obj;
+        }
+
+        @VisibleForTesting
+        static int getBucket(long elapsedUs) {
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_US.length; i++) {
+                if (elapsedUs <= BUCKET_UPPER_BOUNDS_US[i]) {
+                    return i;
+                }
+            }
+            return BUCKET_UPPER_BOUNDS_US.length;
+        }
+    }
+}
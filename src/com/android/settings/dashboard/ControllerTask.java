@@ -40,6 +40,7 @@ public class ControllerTask implements Runnable {
     private final PreferenceScreen mScreen;
     private final int mMetricsCategory;
     private final MetricsFeatureProvider mMetricsFeature;
+    private volatile boolean mCancelled;
 
     public ControllerTask(AbstractPreferenceController controller, PreferenceScreen screen,
             MetricsFeatureProvider metricsFeature, int metricsCategory) {
@@ -51,7 +52,7 @@ public class ControllerTask implements Runnable {
 
     @Override
     public void run() {
-        if (!mController.isAvailable()) {
+        if (mCancelled || !ControllerLatencyTracker.getInstance().isAvailable(mController)) {
             return;
         }
 
@@ -69,8 +70,11 @@ public class ControllerTask implements Runnable {
             return;
         }
         ThreadUtils.postOnMainThread(() -> {
+            if (mCancelled) {
+                return;
+            }
             final long t = SystemClock.elapsedRealtime();
-            mController.updateState(preference);
+            ControllerLatencyTracker.getInstance().updateState(mController, preference);
             final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
             if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
                 Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
@@ -84,6 +88,13 @@ public class ControllerTask implements Runnable {
         });
     }
 
+    /**
+     * Skips the remaining work, including an update already posted to the main thread.
+     */
+    void cancel() {
+        mCancelled = true;
+    }
+
     AbstractPreferenceController getController() {
         return mController;
     }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded, process-wide executor shared by all {@link DashboardFragment}s to run
+ * {@link ControllerFutureTask}s. Tasks are dequeued by {@link ControllerFutureTask#getPriority()}.
+ */
+public class ControllerTaskExecutor {
+
+    private static final String THREAD_NAME_PREFIX = "DashboardController-";
+    private static final int MAX_POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static ControllerTaskExecutor sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+
+    public static synchronized ControllerTaskExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new ControllerTaskExecutor(MAX_POOL_SIZE);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ControllerTaskExecutor(int poolSize) {
+        // With an unbounded queue the pool never grows past its core size, so core == max.
+        mExecutor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new PriorityBlockingQueue<>(), new ControllerThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the task. Tasks with a lower priority value are started first.
+     */
+    public void execute(ControllerFutureTask task) {
+        mExecutor.execute(task);
+    }
+
+    /**
+     * Cancels the task and removes it from the queue if it has not started yet.
+     */
+    public void cancel(ControllerFutureTask task) {
+        task.cancel(false /* mayInterruptIfRunning */);
+        mExecutor.remove(task);
+    }
+
+    @VisibleForTesting
+    int getQueueSize() {
+        return mExecutor.getQueue().size();
+    }
+
+    private static class ControllerThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, THREAD_NAME_PREFIX + mCount.getAndIncrement());
+        }
+    }
+}
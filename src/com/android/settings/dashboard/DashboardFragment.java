@@ -48,16 +48,15 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -76,6 +75,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
     @VisibleForTesting
+    final List<ControllerFutureTask> mPendingControllerTasks = new ArrayList<>();
+    @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
@@ -242,6 +243,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStop() {
         super.onStop();
+        cancelPendingControllerTasks();
         unregisterDynamicDataObservers(new ArrayList<>(mRegisteredObservers));
         if (mListeningToCategoryChange) {
             final Activity activity = getActivity();
@@ -337,8 +339,9 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * on all {@link AbstractPreferenceController}s.
      */
     protected void displayResourceTilesToScreen(PreferenceScreen screen) {
+        final ControllerLatencyTracker tracker = ControllerLatencyTracker.getInstance();
         mPreferenceControllers.values().stream().flatMap(Collection::stream).forEach(
-                controller -> controller.displayPreference(screen));
+                controller -> tracker.displayPreference(controller, screen));
     }
 
     /**
@@ -366,11 +369,12 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             return;
         }
         final PreferenceScreen screen = getPreferenceScreen();
+        final ControllerLatencyTracker tracker = ControllerLatencyTracker.getInstance();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                if (!controller.isAvailable()) {
+                if (!tracker.isAvailable(controller)) {
                     continue;
                 }
 
@@ -387,39 +391,93 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
-                controller.updateState(preference);
+                tracker.updateState(controller, preference);
             }
         }
     }
 
     /**
      * Use parallel method to update state of each preference managed by PreferenceController.
+     * Tasks run on the shared {@link ControllerTaskExecutor}, ordered by the position of their
+     * preference on screen, and each result is applied on the main thread as soon as it is ready.
      */
     @VisibleForTesting
     void updatePreferenceStatesInParallel() {
+        // Results of a previous pass are about to be refreshed anyway.
+        cancelPendingControllerTasks();
         final PreferenceScreen screen = getPreferenceScreen();
+        final ControllerTaskExecutor executor = ControllerTaskExecutor.getInstance();
+        final Map<String, Integer> positions = getPreferencePositions(screen);
         final Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
-        final List<ControllerFutureTask> taskList = new ArrayList<>();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
                 final ControllerFutureTask task = new ControllerFutureTask(
                         new ControllerTask(controller, screen, mMetricsFeatureProvider,
-                                getMetricsCategory()), null /* result */);
-                taskList.add(task);
-                ThreadUtils.postOnBackgroundThread(task);
+                                getMetricsCategory()), null /* result */,
+                        getControllerTaskPriority(positions, controller));
+                mPendingControllerTasks.add(task);
+                executor.execute(task);
             }
         }
+    }
+
+    /**
+     * Returns the priority of the controller task, preferences above the fold come first.
+     */
+    @VisibleForTesting
+    int getControllerTaskPriority(Map<String, Integer> positions,
+            AbstractPreferenceController controller) {
+        final String key = controller.getPreferenceKey();
+        final Integer position = TextUtils.isEmpty(key) ? null : positions.get(key);
+        return position == null ? ControllerFutureTask.PRIORITY_DEFAULT : position;
+    }
+
+    /**
+     * Returns the position of each keyed preference in the group once flattened, as shown on
+     * screen. {@link Preference#getOrder()} is only relative to the parent group.
+     */
+    @VisibleForTesting
+    static Map<String, Integer> getPreferencePositions(PreferenceGroup group) {
+        final Map<String, Integer> positions = new ArrayMap<>();
+        if (group != null) {
+            addPreferencePositions(group, positions);
+        }
+        return positions;
+    }
 
-        for (ControllerFutureTask task : taskList) {
-            try {
-                task.get();
-            } catch (InterruptedException | ExecutionException e) {
-                Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
+    private static void addPreferencePositions(PreferenceGroup group,
+            Map<String, Integer> positions) {
+        final int count = group.getPreferenceCount();
+        final List<Preference> preferences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            preferences.add(group.getPreference(i));
+        }
+        // Shown by order, the sort is stable for the preferences ordered as added.
+        preferences.sort(Comparator.comparingInt(Preference::getOrder));
+        for (Preference preference : preferences) {
+            final String key = preference.getKey();
+            if (!TextUtils.isEmpty(key) && !positions.containsKey(key)) {
+                positions.put(key, positions.size());
+            }
+            if (preference instanceof PreferenceGroup) {
+                addPreferencePositions((PreferenceGroup) preference, positions);
             }
         }
     }
 
+    private void cancelPendingControllerTasks() {
+        if (mPendingControllerTasks.isEmpty()) {
+            return;
+        }
+        final ControllerTaskExecutor executor = ControllerTaskExecutor.getInstance();
+        // Done tasks may still have an update posted to the main thread, cancel them as well.
+        for (ControllerFutureTask task : mPendingControllerTasks) {
+            executor.cancel(task);
+        }
+        mPendingControllerTasks.clear();
+    }
+
     /**
      * Refresh all preference items, including both static prefs from xml, and dynamic items from
      * DashboardCategory.
@@ -32,6 +32,7 @@ import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.SystemProperties;
 import android.os.UserManager;
+import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -60,6 +61,7 @@ import com.android.settings.development.bluetooth.BluetoothSampleRateDialogPrefe
 import com.android.settings.development.qstile.DevelopmentTiles;
 import com.android.settings.development.storage.SharedDataPreferenceController;
 import com.android.settings.search.BaseSearchIndexProvider;
+import com.android.settings.search.NonIndexableKeysCache;
 import com.android.settings.widget.SwitchBar;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.lifecycle.Lifecycle;
@@ -618,6 +620,16 @@ public class DevelopmentSettingsDashboardFragment extends RestrictedDashboardFra
                     return DevelopmentSettingsEnabler.isDevelopmentSettingsEnabled(context);
                 }
 
+                @Override
+                public NonIndexableKeysCache.Dependencies getNonIndexableKeysDependencies(
+                        Context context) {
+                    return new NonIndexableKeysCache.Dependencies()
+                            .addUri(Settings.Global.getUriFor(
+                                    Settings.Global.DEVELOPMENT_SETTINGS_ENABLED))
+                            .dependOnPackages()
+                            .dependOnUsers();
+                }
+
                 @Override
                 public List<AbstractPreferenceController> createPreferenceControllers(Context
                         context) {
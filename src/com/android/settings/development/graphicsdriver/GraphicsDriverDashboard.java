@@ -19,11 +19,13 @@ package com.android.settings.development.graphicsdriver;
 import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.os.Bundle;
+import android.provider.Settings;
 
 import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.search.BaseSearchIndexProvider;
+import com.android.settings.search.NonIndexableKeysCache;
 import com.android.settings.widget.SwitchBar;
 import com.android.settings.widget.SwitchBarController;
 import com.android.settingslib.development.DevelopmentSettingsEnabler;
@@ -77,5 +79,15 @@ public class GraphicsDriverDashboard extends DashboardFragment {
                 protected boolean isPageSearchEnabled(Context context) {
                     return DevelopmentSettingsEnabler.isDevelopmentSettingsEnabled(context);
                 }
+
+                @Override
+                public NonIndexableKeysCache.Dependencies getNonIndexableKeysDependencies(
+                        Context context) {
+                    return new NonIndexableKeysCache.Dependencies()
+                            .addUri(Settings.Global.getUriFor(
+                                    Settings.Global.DEVELOPMENT_SETTINGS_ENABLED))
+                            .dependOnPackages()
+                            .dependOnUsers();
+                }
             };
 }
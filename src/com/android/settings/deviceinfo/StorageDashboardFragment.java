@@ -41,6 +41,7 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 import com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController;
 import com.android.settings.deviceinfo.storage.CachedStorageValuesHelper;
+import com.android.settings.deviceinfo.storage.PackageStorageStatsStore;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
@@ -71,6 +72,8 @@ public class StorageDashboardFragment extends DashboardFragment
     private VolumeInfo mVolume;
     private PrivateStorageInfo mStorageInfo;
     private SparseArray<StorageAsyncLoader.AppsStorageResult> mAppsResult;
+    // Whether mAppsResult only holds the totals of the packages attributed so far.
+    private boolean mAppsResultPartial;
     private CachedStorageValuesHelper mCachedStorageValuesHelper;
 
     private StorageItemPreferenceController mPreferenceController;
@@ -259,16 +262,33 @@ public class StorageDashboardFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.AppsStorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, context.getSystemService(UserManager.class),
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context,
+                context.getSystemService(UserManager.class),
                 mVolume.fsUuid,
                 new StorageStatsSource(context),
                 context.getPackageManager());
+        loader.setStatsStore(PackageStorageStatsStore.getInstance(context, mVolume.fsUuid));
+        loader.setPartialResultListener(this::onPartialAppsResult);
+        return loader;
+    }
+
+    @VisibleForTesting
+    void onPartialAppsResult(SparseArray<StorageAsyncLoader.AppsStorageResult> data) {
+        if (getView() == null) {
+            return;
+        }
+        // Show the totals so far, only complete results are cached.
+        mAppsResult = data;
+        mAppsResultPartial = true;
+        onReceivedSizes();
     }
 
     @Override
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.AppsStorageResult>> loader,
             SparseArray<StorageAsyncLoader.AppsStorageResult> data) {
         mAppsResult = data;
+        // A result missing some packages is shown, but cached like a partial one.
+        mAppsResultPartial = isIncomplete(data);
         maybeCacheFreshValues();
         onReceivedSizes();
     }
@@ -277,6 +297,15 @@ public class StorageDashboardFragment extends DashboardFragment
     public void onLoaderReset(Loader<SparseArray<StorageAsyncLoader.AppsStorageResult>> loader) {
     }
 
+    private static boolean isIncomplete(SparseArray<StorageAsyncLoader.AppsStorageResult> data) {
+        for (int i = 0, size = data.size(); i < size; i++) {
+            if (data.valueAt(i).incomplete) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @VisibleForTesting
     public void setCachedStorageValuesHelper(CachedStorageValuesHelper helper) {
         mCachedStorageValuesHelper = helper;
@@ -333,7 +362,7 @@ public class StorageDashboardFragment extends DashboardFragment
     }
 
     private void maybeCacheFreshValues() {
-        if (mStorageInfo != null && mAppsResult != null) {
+        if (mStorageInfo != null && mAppsResult != null && !mAppsResultPartial) {
             mCachedStorageValuesHelper.cacheResult(
                     mStorageInfo, mAppsResult.get(UserHandle.myUserId()));
         }
@@ -32,6 +32,7 @@ import androidx.loader.content.Loader;
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.dashboard.DashboardFragment;
+import com.android.settings.deviceinfo.storage.PackageStorageStatsStore;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader.AppsStorageResult;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
@@ -114,11 +115,13 @@ public class StorageProfileFragment extends DashboardFragment
     @Override
     public Loader<SparseArray<AppsStorageResult>> onCreateLoader(int id, Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context,
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context,
                 context.getSystemService(UserManager.class),
                 mVolume.fsUuid,
                 new StorageStatsSource(context),
                 context.getPackageManager());
+        loader.setStatsStore(PackageStorageStatsStore.getInstance(context, mVolume.fsUuid));
+        return loader;
     }
 
     @Override
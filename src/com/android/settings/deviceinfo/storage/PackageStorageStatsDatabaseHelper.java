@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * Database of the storage attributed to each package of each user, see
+ * {@link PackageStorageStatsStore}.
+ */
+public class PackageStorageStatsDatabaseHelper extends SQLiteOpenHelper {
+    private static final String TAG = "PkgStorageStatsDbHelper";
+
+    private static final String DATABASE_NAME = "storage_stats.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public interface Tables {
+        String TABLE_PACKAGE_STATS = "package_stats";
+    }
+
+    public interface PackageStatsColumns {
+        /**
+         * The fsUuid of the volume, empty for the internal storage
+         */
+        String VOLUME_UUID = "volume_uuid";
+        /**
+         * The user id the package is installed for
+         */
+        String USER_ID = "user_id";
+        /**
+         * The package name
+         */
+        String PACKAGE_NAME = "package_name";
+        /**
+         * The apk path of the package when it was measured, it changes when the package is updated
+         */
+        String SOURCE_DIR = "source_dir";
+        /**
+         * The storage category the package is attributed to
+         * @see PackageStorageStatsStore.Category
+         */
+        String CATEGORY = "category";
+        /**
+         * The data size of the package, with the cache capped at its quota
+         */
+        String DATA_BYTES = "data_bytes";
+        /**
+         * The code size of the package
+         */
+        String CODE_BYTES = "code_bytes";
+        /**
+         * The time when the package was measured
+         */
+        String TIME_STAMP_MS = "time_stamp_ms";
+    }
+
+    private static final String CREATE_PACKAGE_STATS_TABLE =
+            "CREATE TABLE " + Tables.TABLE_PACKAGE_STATS +
+                    "(" +
+                    PackageStatsColumns.VOLUME_UUID +
+                    " TEXT NOT NULL, " +
+                    PackageStatsColumns.USER_ID +
+                    " INTEGER NOT NULL, " +
+                    PackageStatsColumns.PACKAGE_NAME +
+                    " TEXT NOT NULL, " +
+                    PackageStatsColumns.SOURCE_DIR +
+                    " TEXT, " +
+                    PackageStatsColumns.CATEGORY +
+                    " INTEGER NOT NULL, " +
+                    PackageStatsColumns.DATA_BYTES +
+                    " INTEGER NOT NULL, " +
+                    PackageStatsColumns.CODE_BYTES +
+                    " INTEGER NOT NULL, " +
+                    PackageStatsColumns.TIME_STAMP_MS +
+                    " INTEGER NOT NULL, " +
+                    " PRIMARY KEY (" + PackageStatsColumns.VOLUME_UUID + ","
+                    + PackageStatsColumns.USER_ID + "," + PackageStatsColumns.PACKAGE_NAME + ")"
+                    + ")";
+
+    private static PackageStorageStatsDatabaseHelper sSingleton;
+
+    public static synchronized PackageStorageStatsDatabaseHelper getInstance(Context context) {
+        if (sSingleton == null) {
+            sSingleton = new PackageStorageStatsDatabaseHelper(context.getApplicationContext());
+        }
+        return sSingleton;
+    }
+
+    private PackageStorageStatsDatabaseHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        bootstrapDB(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < DATABASE_VERSION) {
+            Log.w(TAG, "Detected schema version '" + oldVersion + "'. " +
+                    "Index needs to be rebuilt for schema version '" + newVersion + "'.");
+            // The stats are measured again on the next load.
+            reconstruct(db);
+        }
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.w(TAG, "Detected schema version '" + oldVersion + "'. " +
+                "Index needs to be rebuilt for schema version '" + newVersion + "'.");
+        reconstruct(db);
+    }
+
+    public void reconstruct(SQLiteDatabase db) {
+        dropTables(db);
+        bootstrapDB(db);
+    }
+
+    private void bootstrapDB(SQLiteDatabase db) {
+        db.execSQL(CREATE_PACKAGE_STATS_TABLE);
+        Log.i(TAG, "Bootstrapped database");
+    }
+
+    private void dropTables(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_PACKAGE_STATS);
+    }
+}
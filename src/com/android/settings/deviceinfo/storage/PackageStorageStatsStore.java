@@ -0,0 +1,421 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static android.content.pm.ApplicationInfo.CATEGORY_AUDIO;
+import static android.content.pm.ApplicationInfo.CATEGORY_GAME;
+import static android.content.pm.ApplicationInfo.CATEGORY_IMAGE;
+import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.provider.Settings;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.deviceinfo.storage.PackageStorageStatsDatabaseHelper.PackageStatsColumns;
+import com.android.settings.deviceinfo.storage.PackageStorageStatsDatabaseHelper.Tables;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The storage attributed to each package of each user of a volume, persisted in
+ * {@link PackageStorageStatsDatabaseHelper}, along with the per-user category totals.
+ *
+ * The totals are kept up to date as entries change, so that updating a package only costs the
+ * entries of that package. An entry needs to be measured again when its package is updated,
+ * reported as changed, or once it is older than the storage clobber threshold, since apps can
+ * grow their data without any notification.
+ */
+public class PackageStorageStatsStore {
+    private static final String TAG = "PkgStorageStatsStore";
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({CATEGORY_GAMES, CATEGORY_MUSIC, CATEGORY_VIDEO, CATEGORY_PHOTOS, CATEGORY_OTHER})
+    public @interface Category {}
+
+    public static final int CATEGORY_GAMES = 0;
+    public static final int CATEGORY_MUSIC = 1;
+    public static final int CATEGORY_VIDEO = 2;
+    public static final int CATEGORY_PHOTOS = 3;
+    public static final int CATEGORY_OTHER = 4;
+    private static final int CATEGORY_COUNT = 5;
+
+    private static final Map<String, PackageStorageStatsStore> sInstances = new ArrayMap<>();
+    private static boolean sPackageReceiverRegistered;
+
+    @Nullable
+    private final PackageStorageStatsDatabaseHelper mDatabaseHelper;
+    private final String mUuid;
+    private final long mRefreshIntervalMs;
+    // Package name to the entries of the users which have it, ordered by user id.
+    private final Map<String, SparseArray<Entry>> mEntries = new ArrayMap<>();
+    // User id to the total size of each category.
+    private final SparseArray<long[]> mTotals = new SparseArray<>();
+    // Package name to the time it was reported as changed.
+    private final Map<String, Long> mChangedPackages = new ArrayMap<>();
+    private boolean mLoaded;
+
+    /**
+     * @return the persisted store of the volume, {@code null} being the internal storage.
+     */
+    public static PackageStorageStatsStore getInstance(Context context, @Nullable String uuid) {
+        final String key = uuid == null ? "" : uuid;
+        synchronized (sInstances) {
+            PackageStorageStatsStore store = sInstances.get(key);
+            if (store == null) {
+                final Context appContext = context.getApplicationContext();
+                final long refreshIntervalMs = Settings.Global.getLong(
+                        appContext.getContentResolver(),
+                        Settings.Global.STORAGE_SETTINGS_CLOBBER_THRESHOLD,
+                        TimeUnit.MINUTES.toMillis(5));
+                store = new PackageStorageStatsStore(
+                        PackageStorageStatsDatabaseHelper.getInstance(appContext), key,
+                        refreshIntervalMs);
+                sInstances.put(key, store);
+                registerPackageReceiver(appContext);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Marks the package as changed in every store, e.g. after its cache was cleared.
+     */
+    public static void onPackageChanged(String packageName) {
+        final long now = System.currentTimeMillis();
+        synchronized (sInstances) {
+            for (PackageStorageStatsStore store : sInstances.values()) {
+                store.markChanged(packageName, now);
+            }
+        }
+    }
+
+    /**
+     * @param databaseHelper where entries are persisted, or {@code null} to keep them in memory.
+     */
+    @VisibleForTesting
+    PackageStorageStatsStore(@Nullable PackageStorageStatsDatabaseHelper databaseHelper,
+            String uuid, long refreshIntervalMs) {
+        mDatabaseHelper = databaseHelper;
+        mUuid = uuid;
+        mRefreshIntervalMs = refreshIntervalMs;
+    }
+
+    /**
+     * Reads the persisted entries, once. Must not be called on the main thread.
+     */
+    public synchronized void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mDatabaseHelper == null) {
+            return;
+        }
+        try (Cursor cursor = mDatabaseHelper.getReadableDatabase().query(
+                Tables.TABLE_PACKAGE_STATS, null /* columns */,
+                PackageStatsColumns.VOLUME_UUID + "=?", new String[]{mUuid},
+                null /* groupBy */, null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                final Entry entry = new Entry(
+                        cursor.getInt(cursor.getColumnIndex(PackageStatsColumns.USER_ID)),
+                        cursor.getString(cursor.getColumnIndex(PackageStatsColumns.PACKAGE_NAME)),
+                        cursor.getString(cursor.getColumnIndex(PackageStatsColumns.SOURCE_DIR)),
+                        cursor.getInt(cursor.getColumnIndex(PackageStatsColumns.CATEGORY)),
+                        cursor.getLong(cursor.getColumnIndex(PackageStatsColumns.DATA_BYTES)),
+                        cursor.getLong(cursor.getColumnIndex(PackageStatsColumns.CODE_BYTES)),
+                        cursor.getLong(cursor.getColumnIndex(PackageStatsColumns.TIME_STAMP_MS)));
+                putEntry(entry);
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to read the package stats", e);
+        }
+        for (String packageName : mEntries.keySet()) {
+            addToTotals(packageName, 1);
+        }
+    }
+
+    /**
+     * @return whether the package needs to be measured again for the user.
+     */
+    public synchronized boolean needsRefresh(int userId, ApplicationInfo app, long nowMs) {
+        final SparseArray<Entry> entries = mEntries.get(app.packageName);
+        final Entry entry = entries == null ? null : entries.get(userId);
+        if (entry == null) {
+            return true;
+        }
+        final Long changedTime = mChangedPackages.get(app.packageName);
+        return (changedTime != null && changedTime >= entry.mTimestampMs)
+                || !TextUtils.equals(entry.mSourceDir, app.sourceDir)
+                || entry.mCategory != getCategory(app)
+                || nowMs - entry.mTimestampMs >= mRefreshIntervalMs
+                || nowMs < entry.mTimestampMs;
+    }
+
+    /**
+     * Removes the entries of users and packages which are not installed anymore.
+     *
+     * @param installedPackages the installed packages of every user.
+     */
+    public synchronized void retainInstalledPackages(SparseArray<Set<String>> installedPackages) {
+        final List<Entry> removed = new ArrayList<>();
+        for (SparseArray<Entry> entries : mEntries.values()) {
+            for (int j = 0; j < entries.size(); j++) {
+                final Entry entry = entries.valueAt(j);
+                final Set<String> packages = installedPackages.get(entry.mUserId);
+                if (packages == null || !packages.contains(entry.mPackageName)) {
+                    removed.add(entry);
+                }
+            }
+        }
+        for (int i = 0, size = removed.size(); i < size; i++) {
+            final Entry entry = removed.get(i);
+            applyPackageChange(entry.mPackageName, () ->
+                    mEntries.get(entry.mPackageName).remove(entry.mUserId));
+        }
+        for (int i = mTotals.size() - 1; i >= 0; i--) {
+            if (installedPackages.get(mTotals.keyAt(i)) == null) {
+                mTotals.removeAt(i);
+            }
+        }
+        if (!removed.isEmpty()) {
+            persist(null /* updated */, removed);
+        }
+    }
+
+    /**
+     * Replaces the entries of the same package and user, and updates the totals accordingly.
+     */
+    public synchronized void update(List<Entry> entries) {
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            final Entry entry = entries.get(i);
+            applyPackageChange(entry.mPackageName, () -> putEntry(entry));
+            final Long changedTime = mChangedPackages.get(entry.mPackageName);
+            if (changedTime != null && changedTime < entry.mTimestampMs) {
+                mChangedPackages.remove(entry.mPackageName);
+            }
+        }
+        persist(entries, null /* removed */);
+    }
+
+    /**
+     * @return the current totals of the user.
+     */
+    public synchronized StorageAsyncLoader.AppsStorageResult getTotals(int userId) {
+        final StorageAsyncLoader.AppsStorageResult result =
+                new StorageAsyncLoader.AppsStorageResult();
+        final long[] totals = mTotals.get(userId);
+        if (totals != null) {
+            result.gamesSize = totals[CATEGORY_GAMES];
+            result.musicAppsSize = totals[CATEGORY_MUSIC];
+            result.videoAppsSize = totals[CATEGORY_VIDEO];
+            result.photosAppsSize = totals[CATEGORY_PHOTOS];
+            result.otherAppsSize = totals[CATEGORY_OTHER];
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    synchronized void markChanged(String packageName, long timeMs) {
+        mChangedPackages.put(packageName, timeMs);
+    }
+
+    /**
+     * @return the category the storage of the app is attributed to.
+     */
+    @Category
+    public static int getCategory(ApplicationInfo app) {
+        switch (app.category) {
+            case CATEGORY_GAME:
+                return CATEGORY_GAMES;
+            case CATEGORY_AUDIO:
+                return CATEGORY_MUSIC;
+            case CATEGORY_VIDEO:
+                return CATEGORY_VIDEO;
+            case CATEGORY_IMAGE:
+                return CATEGORY_PHOTOS;
+            default:
+                // The deprecated game flag does not set the category.
+                if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
+                    return CATEGORY_GAMES;
+                }
+                return CATEGORY_OTHER;
+        }
+    }
+
+    /**
+     * Runs the change of the entries of a package. The package is taken out of the totals before
+     * and added back after, since the user its code size is attributed to may change.
+     */
+    private void applyPackageChange(String packageName, Runnable change) {
+        addToTotals(packageName, -1);
+        change.run();
+        final SparseArray<Entry> entries = mEntries.get(packageName);
+        if (entries != null && entries.size() == 0) {
+            mEntries.remove(packageName);
+        }
+        addToTotals(packageName, 1);
+    }
+
+    private void addToTotals(String packageName, int sign) {
+        final SparseArray<Entry> entries = mEntries.get(packageName);
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            final Entry entry = entries.valueAt(i);
+            long[] totals = mTotals.get(entry.mUserId);
+            if (totals == null) {
+                totals = new long[CATEGORY_COUNT];
+                mTotals.put(entry.mUserId, totals);
+            }
+            // This isn't quite right because it slams the first user by user id with the whole
+            // code size, but this ensures that we count all apps seen once.
+            final long size = entry.mDataBytes + (i == 0 ? entry.mCodeBytes : 0);
+            totals[entry.mCategory] += sign * size;
+        }
+    }
+
+    private void putEntry(Entry entry) {
+        SparseArray<Entry> entries = mEntries.get(entry.mPackageName);
+        if (entries == null) {
+            entries = new SparseArray<>(1);
+            mEntries.put(entry.mPackageName, entries);
+        }
+        entries.put(entry.mUserId, entry);
+    }
+
+    private void persist(@Nullable List<Entry> updated, @Nullable List<Entry> removed) {
+        if (mDatabaseHelper == null) {
+            return;
+        }
+        try {
+            final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                if (updated != null) {
+                    for (int i = 0, size = updated.size(); i < size; i++) {
+                        db.replaceOrThrow(Tables.TABLE_PACKAGE_STATS, null /* nullColumnHack */,
+                                toContentValues(updated.get(i)));
+                    }
+                }
+                if (removed != null) {
+                    for (int i = 0, size = removed.size(); i < size; i++) {
+                        final Entry entry = removed.get(i);
+                        db.delete(Tables.TABLE_PACKAGE_STATS,
+                                PackageStatsColumns.VOLUME_UUID + "=? AND "
+                                        + PackageStatsColumns.USER_ID + "=? AND "
+                                        + PackageStatsColumns.PACKAGE_NAME + "=?",
+                                new String[]{mUuid, String.valueOf(entry.mUserId),
+                                        entry.mPackageName});
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to persist the package stats", e);
+        }
+    }
+
+    private ContentValues toContentValues(Entry entry) {
+        final ContentValues values = new ContentValues();
+        values.put(PackageStatsColumns.VOLUME_UUID, mUuid);
+        values.put(PackageStatsColumns.USER_ID, entry.mUserId);
+        values.put(PackageStatsColumns.PACKAGE_NAME, entry.mPackageName);
+        values.put(PackageStatsColumns.SOURCE_DIR, entry.mSourceDir);
+        values.put(PackageStatsColumns.CATEGORY, entry.mCategory);
+        values.put(PackageStatsColumns.DATA_BYTES, entry.mDataBytes);
+        values.put(PackageStatsColumns.CODE_BYTES, entry.mCodeBytes);
+        values.put(PackageStatsColumns.TIME_STAMP_MS, entry.mTimestampMs);
+        return values;
+    }
+
+    private static void registerPackageReceiver(Context context) {
+        if (sPackageReceiverRegistered) {
+            return;
+        }
+        sPackageReceiverRegistered = true;
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_DATA_CLEARED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                final Uri data = intent.getData();
+                if (data != null) {
+                    onPackageChanged(data.getSchemeSpecificPart());
+                }
+            }
+        }, filter);
+    }
+
+    /**
+     * The storage attributed to a package of a user.
+     */
+    public static class Entry {
+        private final int mUserId;
+        private final String mPackageName;
+        private final String mSourceDir;
+        @Category
+        private final int mCategory;
+        private final long mDataBytes;
+        private final long mCodeBytes;
+        private final long mTimestampMs;
+
+        /**
+         * @param dataBytes the data size, with the cache capped at its quota.
+         * @param timestampMs the time the package started being measured.
+         */
+        public Entry(int userId, String packageName, String sourceDir, @Category int category,
+                long dataBytes, long codeBytes, long timestampMs) {
+            mUserId = userId;
+            mPackageName = packageName;
+            mSourceDir = sourceDir;
+            mCategory = category;
+            mDataBytes = dataBytes;
+            mCodeBytes = codeBytes;
+            mTimestampMs = timestampMs;
+        }
+    }
+}
@@ -16,11 +16,6 @@
 
 package com.android.settings.deviceinfo.storage;
 
-import static android.content.pm.ApplicationInfo.CATEGORY_AUDIO;
-import static android.content.pm.ApplicationInfo.CATEGORY_GAME;
-import static android.content.pm.ApplicationInfo.CATEGORY_IMAGE;
-import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
-
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
@@ -34,25 +29,52 @@ import android.util.SparseArray;
 
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
- * users
+ * users.
+ *
+ * Packages of all users are split into chunks which are measured in parallel on a shared pool of
+ * workers. The measured entries are added to a {@link PackageStorageStatsStore} by the loading
+ * thread, which can report partial results through a {@link PartialResultListener} while the
+ * remaining chunks are running. With a persisted store, only the packages which changed since the
+ * last load are measured, and the known totals are reported as soon as the external stats of the
+ * users are loaded.
  */
 public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.AppsStorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
 
+    private static final int MAX_WORKERS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int MIN_CHUNK_SIZE = 16;
+    // Chunks per worker, so that partial results show up regularly.
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static ThreadPoolExecutor sExecutor;
+
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    private PartialResultListener mPartialResultListener;
+    private PackageStorageStatsStore mStatsStore;
+    private volatile boolean mLoadFinished;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
@@ -63,14 +85,39 @@ public class StorageAsyncLoader
         mPackageManager = pm;
     }
 
+    /**
+     * Sets a listener which receives the results accumulated so far, on the main thread, until
+     * the final result is delivered.
+     */
+    public void setPartialResultListener(PartialResultListener listener) {
+        mPartialResultListener = listener;
+    }
+
+    /**
+     * Sets the store of the stats of each package, so that only the packages which changed since
+     * the last load are measured. Without it, every package is measured.
+     */
+    public void setStatsStore(PackageStorageStatsStore store) {
+        mStatsStore = store;
+    }
+
     @Override
     public SparseArray<AppsStorageResult> loadInBackground() {
-        return loadApps();
+        mLoadFinished = false;
+        try {
+            return loadApps();
+        } finally {
+            mLoadFinished = true;
+        }
     }
 
     private SparseArray<AppsStorageResult> loadApps() {
-        mSeenPackages = new ArraySet<>();
-        SparseArray<AppsStorageResult> result = new SparseArray<>();
+        final PackageStorageStatsStore store = mStatsStore != null
+                ? mStatsStore
+                : new PackageStorageStatsStore(null /* databaseHelper */, "" /* uuid */,
+                        0 /* refreshIntervalMs */);
+        store.load();
+
         List<UserInfo> infos = mUserManager.getUsers();
         // Sort the users by user id ascending.
         Collections.sort(
@@ -81,25 +128,96 @@ public class StorageAsyncLoader
                         return Integer.compare(userInfo.id, otherUser.id);
                     }
                 });
+
+        Log.d(TAG, "Loading apps");
+        // Only the packages which changed since they were last measured are measured again.
+        final long now = System.currentTimeMillis();
+        final SparseArray<Set<String>> installedPackages = new SparseArray<>();
+        final List<PackageItem> items = new ArrayList<>();
         for (int i = 0, userCount = infos.size(); i < userCount; i++) {
-            UserInfo info = infos.get(i);
-            result.put(info.id, getStorageResultForUser(info.id));
+            final int userId = infos.get(i).id;
+            final Set<String> packages = new ArraySet<>();
+            installedPackages.put(userId, packages);
+            final List<ApplicationInfo> applicationInfos =
+                    mPackageManager.getInstalledApplicationsAsUser(0, userId);
+            for (int j = 0, size = applicationInfos.size(); j < size; j++) {
+                final ApplicationInfo app = applicationInfos.get(j);
+                packages.add(app.packageName);
+                if (store.needsRefresh(userId, app, now)) {
+                    items.add(new PackageItem(userId, app));
+                }
+            }
+        }
+        store.retainInstalledPackages(installedPackages);
+        Log.d(TAG, "Measuring " + items.size() + " packages");
+
+        final SparseArray<StorageStatsSource.ExternalStorageStats> externalStats =
+                new SparseArray<>();
+        final ExecutorCompletionService<TaskResult> completionService =
+                new ExecutorCompletionService<>(getExecutor());
+        final List<Future<TaskResult>> futures = new ArrayList<>();
+        for (int i = 0, userCount = installedPackages.size(); i < userCount; i++) {
+            final int userId = installedPackages.keyAt(i);
+            futures.add(completionService.submit(() -> getExternalStats(userId)));
+        }
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE,
+                (items.size() + MAX_WORKERS * CHUNKS_PER_WORKER - 1)
+                        / (MAX_WORKERS * CHUNKS_PER_WORKER));
+        for (int start = 0; start < items.size(); start += chunkSize) {
+            final List<PackageItem> chunk =
+                    items.subList(start, Math.min(items.size(), start + chunkSize));
+            futures.add(completionService.submit(() -> measurePackages(chunk)));
+        }
+
+        boolean complete = false;
+        try {
+            for (int i = 0, taskCount = futures.size(); i < taskCount; i++) {
+                final TaskResult taskResult = completionService.take().get();
+                if (taskResult.mEntries != null) {
+                    store.update(taskResult.mEntries);
+                }
+                if (taskResult.mExternalStats != null) {
+                    externalStats.put(taskResult.mUserId, taskResult.mExternalStats);
+                }
+                // The media, files and system sizes are derived from the external stats, so
+                // the totals are only shown once those of every user are known.
+                if (i < taskCount - 1 && externalStats.size() == installedPackages.size()) {
+                    postPartialResult(getResult(store, installedPackages, externalStats));
+                }
+            }
+            complete = true;
+        } catch (InterruptedException | ExecutionException e) {
+            Log.w(TAG, "Failed to load apps storage", e);
+            for (Future<TaskResult> future : futures) {
+                future.cancel(true /* mayInterruptIfRunning */);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Log.d(TAG, "Obtaining result completed");
+        final SparseArray<AppsStorageResult> result =
+                getResult(store, installedPackages, externalStats);
+        if (!complete) {
+            // The packages of the failed chunks are missing from the totals.
+            for (int i = 0, size = result.size(); i < size; i++) {
+                result.valueAt(i).incomplete = true;
+            }
         }
         return result;
     }
 
-    private AppsStorageResult getStorageResultForUser(int userId) {
-        Log.d(TAG, "Loading apps");
-        List<ApplicationInfo> applicationInfos =
-                mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        AppsStorageResult result = new AppsStorageResult();
-        UserHandle myUser = UserHandle.of(userId);
-        for (int i = 0, size = applicationInfos.size(); i < size; i++) {
-            ApplicationInfo app = applicationInfos.get(i);
+    private TaskResult measurePackages(List<PackageItem> items) {
+        final List<PackageStorageStatsStore.Entry> entries = new ArrayList<>(items.size());
+        for (int i = 0, size = items.size(); i < size; i++) {
+            final PackageItem item = items.get(i);
+            final ApplicationInfo app = item.mApp;
+            final long timestampMs = System.currentTimeMillis();
 
             StorageStatsSource.AppStorageStats stats;
             try {
-                stats = mStatsManager.getStatsForPackage(mUuid, app.packageName, myUser);
+                stats = mStatsManager.getStatsForPackage(mUuid, app.packageName,
+                        UserHandle.of(item.mUserId));
             } catch (NameNotFoundException | IOException e) {
                 // This may happen if the package was removed during our calculation.
                 Log.w(TAG, "App unexpectedly not found", e);
@@ -118,48 +236,73 @@ public class StorageAsyncLoader
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
 
-            // This isn't quite right because it slams the first user by user id with the whole code
-            // size, but this ensures that we count all apps seen once.
-            if (!mSeenPackages.contains(app.packageName)) {
-                blamedSize += stats.getCodeBytes();
-                mSeenPackages.add(app.packageName);
-            }
-
-            switch (app.category) {
-                case CATEGORY_GAME:
-                    result.gamesSize += blamedSize;
-                    break;
-                case CATEGORY_AUDIO:
-                    result.musicAppsSize += blamedSize;
-                    break;
-                case CATEGORY_VIDEO:
-                    result.videoAppsSize += blamedSize;
-                    break;
-                case CATEGORY_IMAGE:
-                    result.photosAppsSize += blamedSize;
-                    break;
-                default:
-                    // The deprecated game flag does not set the category.
-                    if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
-                        result.gamesSize += blamedSize;
-                        break;
-                    }
-                    result.otherAppsSize += blamedSize;
-                    break;
-            }
+            // The code size is attributed to a single user by the store.
+            entries.add(new PackageStorageStatsStore.Entry(item.mUserId, app.packageName,
+                    app.sourceDir, PackageStorageStatsStore.getCategory(app), blamedSize,
+                    stats.getCodeBytes(), timestampMs));
         }
+        final TaskResult result = new TaskResult();
+        result.mEntries = entries;
+        return result;
+    }
 
+    private TaskResult getExternalStats(int userId) {
         Log.d(TAG, "Loading external stats");
+        final TaskResult result = new TaskResult();
+        result.mUserId = userId;
         try {
-            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
+            result.mExternalStats = mStatsManager.getExternalStorageStats(mUuid,
                     UserHandle.of(userId));
         } catch (IOException e) {
             Log.w(TAG, e);
         }
-        Log.d(TAG, "Obtaining result completed");
         return result;
     }
 
+    private static SparseArray<AppsStorageResult> getResult(PackageStorageStatsStore store,
+            SparseArray<Set<String>> users,
+            SparseArray<StorageStatsSource.ExternalStorageStats> externalStats) {
+        final SparseArray<AppsStorageResult> result = new SparseArray<>(users.size());
+        for (int i = 0, size = users.size(); i < size; i++) {
+            final int userId = users.keyAt(i);
+            final AppsStorageResult userResult = store.getTotals(userId);
+            userResult.externalStats = externalStats.get(userId);
+            result.put(userId, userResult);
+        }
+        return result;
+    }
+
+    private void postPartialResult(SparseArray<AppsStorageResult> result) {
+        final PartialResultListener listener = mPartialResultListener;
+        if (listener == null) {
+            return;
+        }
+        for (int i = 0, size = result.size(); i < size; i++) {
+            final AppsStorageResult userResult = result.valueAt(i);
+            // Only when the query of the external stats failed.
+            if (userResult.externalStats == null) {
+                userResult.externalStats = new StorageStatsSource.ExternalStorageStats(
+                        0 /* totalBytes */, 0 /* audioBytes */, 0 /* videoBytes */,
+                        0 /* imageBytes */, 0 /* appBytes */);
+            }
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            // The final result may already be on its way.
+            if (!mLoadFinished && !isAbandoned()) {
+                listener.onPartialResult(result);
+            }
+        });
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(MAX_WORKERS, MAX_WORKERS, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
     @Override
     protected void onDiscardResult(SparseArray<AppsStorageResult> result) {
     }
@@ -172,6 +315,34 @@ public class StorageAsyncLoader
         public long otherAppsSize;
         public long cacheSize;
         public StorageStatsSource.ExternalStorageStats externalStats;
+        // Whether some packages could not be measured, so that the totals must not be cached.
+        public boolean incomplete;
+    }
+
+    /**
+     * Receives the partial results of a {@link StorageAsyncLoader} while it is loading.
+     */
+    public interface PartialResultListener {
+        void onPartialResult(SparseArray<AppsStorageResult> result);
+    }
+
+    private static class PackageItem {
+        private final int mUserId;
+        private final ApplicationInfo mApp;
+
+        PackageItem(int userId, ApplicationInfo app) {
+            mUserId = userId;
+            mApp = app;
+        }
+    }
+
+    /**
+     * The result of a task, either the entries of measured packages or external stats of a user.
+     */
+    private static class TaskResult {
+        private List<PackageStorageStatsStore.Entry> mEntries;
+        private int mUserId;
+        private StorageStatsSource.ExternalStorageStats mExternalStats;
     }
 
     /**
@@ -261,7 +261,8 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         final ArrayList<BatterySipper> results = new ArrayList<>();
         final int numSippers = sippers.size();
         for (int i = 0; i < numSippers; i++) {
-            BatterySipper sipper = sippers.get(i);
+            // The sippers are combined and smeared below, so leave the helper's ones intact.
+            BatterySipper sipper = BatteryUtils.copyBatterySipper(sippers.get(i));
             if (sipper.getUid() > 0) {
                 int realUid = sipper.getUid();
 
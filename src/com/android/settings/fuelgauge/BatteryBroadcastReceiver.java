@@ -117,20 +117,26 @@ public class BatteryBroadcastReceiver extends BroadcastReceiver {
                         BatteryManager.EXTRA_HEALTH, BatteryManager.BATTERY_HEALTH_UNKNOWN);
                 if (!Utils.isBatteryPresent(intent)) {
                     Log.w(TAG, "Problem reading the battery meter.");
+                    BatteryStatsHelperCache.getInstance().invalidate();
                     mBatteryListener.onBatteryChanged(BatteryUpdateType.BATTERY_NOT_PRESENT);
                 } else if (forceUpdate) {
+                    // Registering doesn't mean the stats changed, keep the cached snapshot.
                     mBatteryListener.onBatteryChanged(BatteryUpdateType.MANUAL);
                 } else if (batteryHealth != mBatteryHealth) {
+                    BatteryStatsHelperCache.getInstance().invalidate();
                     mBatteryListener.onBatteryChanged(BatteryUpdateType.BATTERY_HEALTH);
                 } else if(!batteryLevel.equals(mBatteryLevel)) {
+                    BatteryStatsHelperCache.getInstance().invalidate();
                     mBatteryListener.onBatteryChanged(BatteryUpdateType.BATTERY_LEVEL);
                 } else if (!batteryStatus.equals(mBatteryStatus)) {
+                    BatteryStatsHelperCache.getInstance().invalidate();
                     mBatteryListener.onBatteryChanged(BatteryUpdateType.BATTERY_STATUS);
                 }
                 mBatteryLevel = batteryLevel;
                 mBatteryStatus = batteryStatus;
                 mBatteryHealth = batteryHealth;
             } else if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(intent.getAction())) {
+                BatteryStatsHelperCache.getInstance().invalidate();
                 mBatteryListener.onBatteryChanged(BatteryUpdateType.BATTERY_SAVER);
             }
         }
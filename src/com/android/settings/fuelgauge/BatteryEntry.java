@@ -34,11 +34,13 @@ import android.util.Log;
 
 import com.android.internal.os.BatterySipper;
 import com.android.settings.R;
+import com.android.settings.applications.AppIconLoader;
 import com.android.settingslib.Utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Wraps the power usage data of a BatterySipper with information about package name
@@ -51,7 +53,17 @@ public class BatteryEntry {
     private static final String TAG = "BatteryEntry";
     private static final String PACKAGE_SYSTEM = "android";
 
-    static final HashMap<String,UidToDetail> sUidCache = new HashMap<String,UidToDetail>();
+    // Enough for the uids with a noticeable usage, the icons are also in the AppIconLoader cache.
+    private static final int MAX_UID_CACHE_SIZE = 256;
+
+    // Accessed from the main and the loading threads, guarded by itself.
+    static final Map<String, UidToDetail> sUidCache =
+            new LinkedHashMap<String, UidToDetail>(16, 0.75f, true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UidToDetail> eldest) {
+                    return size() > MAX_UID_CACHE_SIZE;
+                }
+            };
 
     static final ArrayList<BatteryEntry> mRequestQueue = new ArrayList<BatteryEntry>();
     static Handler sHandler;
@@ -117,7 +129,9 @@ public class BatteryEntry {
     }
 
     public static void clearUidCache() {
-        sUidCache.clear();
+        synchronized (sUidCache) {
+            sUidCache.clear();
+        }
     }
 
     public final Context context;
@@ -242,8 +256,11 @@ public class BatteryEntry {
         }
 
         final String uidString = Integer.toString(uid);
-        if (sUidCache.containsKey(uidString)) {
-            UidToDetail utd = sUidCache.get(uidString);
+        final UidToDetail utd;
+        synchronized (sUidCache) {
+            utd = sUidCache.get(uidString);
+        }
+        if (utd != null) {
             defaultPackageName = utd.packageName;
             name = utd.name;
             icon = utd.icon;
@@ -280,6 +297,8 @@ public class BatteryEntry {
         }
 
         PackageManager pm = context.getPackageManager();
+        // Shares the decoded icons and labels with the other app lists.
+        final AppIconLoader iconLoader = AppIconLoader.getInstance(context);
         final int uid = sipper.uidObj.getUid();
         if (sipper.mPackages == null) {
             sipper.mPackages = pm.getPackagesForUid(uid);
@@ -302,13 +321,13 @@ public class BatteryEntry {
                                 + packageLabels[i] + ", user " + userId);
                         continue;
                     }
-                    CharSequence label = ai.loadLabel(pm);
+                    CharSequence label = iconLoader.loadLabel(ai);
                     if (label != null) {
                         packageLabels[i] = label.toString();
                     }
                     if (ai.icon != 0) {
                         defaultPackageName = packages[i];
-                        icon = ai.loadIcon(pm);
+                        icon = iconLoader.loadUnbadgedIcon(ai);
                         break;
                     }
                 } catch (RemoteException e) {
@@ -336,7 +355,7 @@ public class BatteryEntry {
                                 name = nm.toString();
                                 if (pi.applicationInfo.icon != 0) {
                                     defaultPackageName = pkgName;
-                                    icon = pi.applicationInfo.loadIcon(pm);
+                                    icon = iconLoader.loadUnbadgedIcon(pi.applicationInfo);
                                 }
                                 break;
                             }
@@ -362,7 +381,9 @@ public class BatteryEntry {
         utd.name = name;
         utd.icon = icon;
         utd.packageName = defaultPackageName;
-        sUidCache.put(uidString, utd);
+        synchronized (sUidCache) {
+            sUidCache.put(uidString, utd);
+        }
         if (sHandler != null) {
             sHandler.sendMessage(sHandler.obtainMessage(MSG_UPDATE_NAME_ICON, this));
         }
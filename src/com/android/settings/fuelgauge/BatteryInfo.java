@@ -39,6 +39,8 @@ import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.PowerUtil;
 import com.android.settingslib.utils.StringUtil;
 
+import java.util.Arrays;
+
 public class BatteryInfo {
 
     public CharSequence chargeLabel;
@@ -53,6 +55,7 @@ public class BatteryInfo {
     public String suggestionLabel;
     private boolean mCharging;
     private BatteryStats mStats;
+    private HistoryRecords mHistoryRecords;
     private static final String LOG_TAG = "BatteryInfo";
     private long timePeriod;
 
@@ -126,7 +129,11 @@ public class BatteryInfo {
             parserList[i] = parsers[i];
         }
         parserList[parsers.length] = parser;
-        parse(mStats, parserList);
+        // The stats don't change, so their history is only read once.
+        if (mHistoryRecords == null) {
+            mHistoryRecords = HistoryRecords.read(mStats);
+        }
+        mHistoryRecords.replay(parserList);
         String timeString = context.getString(R.string.charge_length_format,
                 Formatter.formatShortElapsedTime(context, timePeriod));
         String remaining = "";
@@ -169,9 +176,13 @@ public class BatteryInfo {
         final BatteryStats stats;
         final long batteryStatsTime = System.currentTimeMillis();
         if (statsHelper == null) {
-            final BatteryStatsHelper localStatsHelper = new BatteryStatsHelper(context,
-                    true);
-            localStatsHelper.create((Bundle) null);
+            // Only the stats are needed, so reuse the snapshot of another battery screen.
+            BatteryStatsHelper localStatsHelper =
+                    BatteryStatsHelperCache.getInstance().getCachedStatsHelper();
+            if (localStatsHelper == null) {
+                localStatsHelper = new BatteryStatsHelper(context, true);
+                localStatsHelper.create((Bundle) null);
+            }
             stats = localStatsHelper.getStats();
         } else {
             stats = statsHelper.getStats();
@@ -314,100 +325,165 @@ public class BatteryInfo {
     }
 
     public static void parse(BatteryStats stats, BatteryDataParser... parsers) {
-        long startWalltime = 0;
-        long endWalltime = 0;
-        long historyStart = 0;
-        long historyEnd = 0;
-        long curWalltime = startWalltime;
-        long lastWallTime = 0;
-        long lastRealtime = 0;
-        int lastInteresting = 0;
-        int pos = 0;
-        boolean first = true;
-        if (stats.startIteratingHistoryLocked()) {
-            final HistoryItem rec = new HistoryItem();
-            while (stats.getNextHistoryLocked(rec)) {
-                pos++;
-                if (first) {
-                    first = false;
-                    historyStart = rec.time;
-                }
-                if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
-                        || rec.cmd == HistoryItem.CMD_RESET) {
-                    // If there is a ridiculously large jump in time, then we won't be
-                    // able to create a good chart with that data, so just ignore the
-                    // times we got before and pretend like our data extends back from
-                    // the time we have now.
-                    // Also, if we are getting a time change and we are less than 5 minutes
-                    // since the start of the history real time, then also use this new
-                    // time to compute the base time, since whatever time we had before is
-                    // pretty much just noise.
-                    if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
-                            || rec.time < (historyStart + (5 * 60 * 1000L))) {
-                        startWalltime = 0;
-                    }
-                    lastWallTime = rec.currentTime;
-                    lastRealtime = rec.time;
-                    if (startWalltime == 0) {
-                        startWalltime = lastWallTime - (lastRealtime - historyStart);
-                    }
-                }
-                if (rec.isDeltaData()) {
-                    lastInteresting = pos;
-                    historyEnd = rec.time;
-                }
-            }
-        }
-        stats.finishIteratingHistoryLocked();
-        endWalltime = lastWallTime + historyEnd - lastRealtime;
-
-        int i = 0;
-        final int N = lastInteresting;
+        HistoryRecords.read(stats).replay(parsers);
+    }
 
-        for (int j = 0; j < parsers.length; j++) {
-            parsers[j].onParsingStarted(startWalltime, endWalltime);
-        }
-        if (endWalltime > startWalltime && stats.startIteratingHistoryLocked()) {
-            final HistoryItem rec = new HistoryItem();
-            while (stats.getNextHistoryLocked(rec) && i < N) {
-                if (rec.isDeltaData()) {
-                    curWalltime += rec.time - lastRealtime;
-                    lastRealtime = rec.time;
-                    long x = (curWalltime - startWalltime);
-                    if (x < 0) {
-                        x = 0;
-                    }
-                    for (int j = 0; j < parsers.length; j++) {
-                        parsers[j].onDataPoint(x, rec);
+    /**
+     * The records of a BatteryStats history, read in a single pass and kept in primitive arrays
+     * so that they can be given to parsers again without walking the history.
+     *
+     * Only the fields of {@link HistoryItem} read by the parsers are kept: the time, command,
+     * current time, battery level and states.
+     */
+    private static final class HistoryRecords {
+        private static final int INITIAL_CAPACITY = 256;
+
+        private long mStartWalltime;
+        private long mEndWalltime;
+        private long mHistoryStart;
+        private long mLastRealtime;
+        // The number of records given to the parsers, up to the last delta record.
+        private int mReplayCount;
+
+        private int mSize;
+        private long[] mTimes = new long[INITIAL_CAPACITY];
+        private long[] mCurrentTimes = new long[INITIAL_CAPACITY];
+        private byte[] mCmds = new byte[INITIAL_CAPACITY];
+        private byte[] mBatteryLevels = new byte[INITIAL_CAPACITY];
+        private int[] mStates = new int[INITIAL_CAPACITY];
+        private int[] mStates2 = new int[INITIAL_CAPACITY];
+
+        static HistoryRecords read(BatteryStats stats) {
+            final HistoryRecords records = new HistoryRecords();
+            long startWalltime = 0;
+            long historyStart = 0;
+            long historyEnd = 0;
+            long lastWallTime = 0;
+            long lastRealtime = 0;
+            int lastInteresting = 0;
+            int pos = 0;
+            boolean first = true;
+            if (stats.startIteratingHistoryLocked()) {
+                final HistoryItem rec = new HistoryItem();
+                while (stats.getNextHistoryLocked(rec)) {
+                    records.add(rec);
+                    pos++;
+                    if (first) {
+                        first = false;
+                        historyStart = rec.time;
                     }
-                } else {
-                    long lastWalltime = curWalltime;
                     if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
                             || rec.cmd == HistoryItem.CMD_RESET) {
-                        if (rec.currentTime >= startWalltime) {
-                            curWalltime = rec.currentTime;
-                        } else {
-                            curWalltime = startWalltime + (rec.time - historyStart);
+                        // If there is a ridiculously large jump in time, then we won't be
+                        // able to create a good chart with that data, so just ignore the
+                        // times we got before and pretend like our data extends back from
+                        // the time we have now.
+                        // Also, if we are getting a time change and we are less than 5 minutes
+                        // since the start of the history real time, then also use this new
+                        // time to compute the base time, since whatever time we had before is
+                        // pretty much just noise.
+                        if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                                || rec.time < (historyStart + (5 * 60 * 1000L))) {
+                            startWalltime = 0;
                         }
+                        lastWallTime = rec.currentTime;
                         lastRealtime = rec.time;
+                        if (startWalltime == 0) {
+                            startWalltime = lastWallTime - (lastRealtime - historyStart);
+                        }
+                    }
+                    if (rec.isDeltaData()) {
+                        lastInteresting = pos;
+                        historyEnd = rec.time;
                     }
+                }
+            }
+            stats.finishIteratingHistoryLocked();
+
+            records.mStartWalltime = startWalltime;
+            records.mEndWalltime = lastWallTime + historyEnd - lastRealtime;
+            records.mHistoryStart = historyStart;
+            records.mLastRealtime = lastRealtime;
+            records.mReplayCount = lastInteresting;
+            return records;
+        }
+
+        void replay(BatteryDataParser... parsers) {
+            final long startWalltime = mStartWalltime;
+            long curWalltime = 0;
+            long lastRealtime = mLastRealtime;
 
-                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
-                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
-                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+            for (int j = 0; j < parsers.length; j++) {
+                parsers[j].onParsingStarted(startWalltime, mEndWalltime);
+            }
+            if (mEndWalltime > startWalltime) {
+                final HistoryItem rec = new HistoryItem();
+                for (int i = 0; i < mReplayCount; i++) {
+                    get(i, rec);
+                    if (rec.isDeltaData()) {
+                        curWalltime += rec.time - lastRealtime;
+                        lastRealtime = rec.time;
+                        long x = (curWalltime - startWalltime);
+                        if (x < 0) {
+                            x = 0;
+                        }
                         for (int j = 0; j < parsers.length; j++) {
-                            parsers[j].onDataGap();
+                            parsers[j].onDataPoint(x, rec);
+                        }
+                    } else {
+                        long lastWalltime = curWalltime;
+                        if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                                || rec.cmd == HistoryItem.CMD_RESET) {
+                            if (rec.currentTime >= startWalltime) {
+                                curWalltime = rec.currentTime;
+                            } else {
+                                curWalltime = startWalltime + (rec.time - mHistoryStart);
+                            }
+                            lastRealtime = rec.time;
+                        }
+
+                        if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                                && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                                || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                            for (int j = 0; j < parsers.length; j++) {
+                                parsers[j].onDataGap();
+                            }
                         }
                     }
                 }
-                i++;
+            }
+
+            for (int j = 0; j < parsers.length; j++) {
+                parsers[j].onParsingDone();
             }
         }
 
-        stats.finishIteratingHistoryLocked();
+        private void add(HistoryItem rec) {
+            if (mSize == mTimes.length) {
+                final int capacity = mSize * 2;
+                mTimes = Arrays.copyOf(mTimes, capacity);
+                mCurrentTimes = Arrays.copyOf(mCurrentTimes, capacity);
+                mCmds = Arrays.copyOf(mCmds, capacity);
+                mBatteryLevels = Arrays.copyOf(mBatteryLevels, capacity);
+                mStates = Arrays.copyOf(mStates, capacity);
+                mStates2 = Arrays.copyOf(mStates2, capacity);
+            }
+            mTimes[mSize] = rec.time;
+            mCurrentTimes[mSize] = rec.currentTime;
+            mCmds[mSize] = rec.cmd;
+            mBatteryLevels[mSize] = rec.batteryLevel;
+            mStates[mSize] = rec.states;
+            mStates2[mSize] = rec.states2;
+            mSize++;
+        }
 
-        for (int j = 0; j < parsers.length; j++) {
-            parsers[j].onParsingDone();
+        private void get(int index, HistoryItem rec) {
+            rec.time = mTimes[index];
+            rec.currentTime = mCurrentTimes[index];
+            rec.cmd = mCmds[index];
+            rec.batteryLevel = mBatteryLevels[index];
+            rec.states = mStates[index];
+            rec.states2 = mStates2[index];
         }
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.os.UserManager;
+import android.text.format.DateUtils;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.internal.os.BatteryStatsHelper;
+
+/**
+ * Process-wide cache of the last refreshed {@link BatteryStatsHelper}, so that the battery
+ * screens opened one after another share one snapshot instead of each refreshing the stats.
+ *
+ * A snapshot is reused until it is older than the TTL, or until {@link BatteryBroadcastReceiver}
+ * sees the battery level, status, health or saver state change. The helpers are shared, so
+ * callers must not change their usage list or its sippers, see
+ * {@link BatteryUtils#copyBatterySipper(com.android.internal.os.BatterySipper)}.
+ */
+public class BatteryStatsHelperCache {
+
+    @VisibleForTesting
+    static final long DEFAULT_TTL_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+
+    private static BatteryStatsHelperCache sInstance;
+
+    // Serializes the refreshes, so that screens loading at the same time share one refresh.
+    private final Object mRefreshLock = new Object();
+    @VisibleForTesting
+    long mTtlMs;
+    private BatteryStatsHelper mStatsHelper;
+    private long mRefreshTimeMs;
+    // Bumped on each invalidation, to drop a snapshot refreshed before it.
+    private int mGeneration;
+
+    public static synchronized BatteryStatsHelperCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new BatteryStatsHelperCache(DEFAULT_TTL_MS);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    BatteryStatsHelperCache(long ttlMs) {
+        mTtlMs = ttlMs;
+    }
+
+    /**
+     * @return the cached {@link BatteryStatsHelper} if it is still fresh, otherwise a newly
+     * refreshed one, which is then cached.
+     */
+    @WorkerThread
+    public BatteryStatsHelper getStatsHelper(Context context, BatteryUtils batteryUtils,
+            UserManager userManager) {
+        synchronized (mRefreshLock) {
+            final int generation;
+            synchronized (this) {
+                final BatteryStatsHelper cachedStatsHelper = getCachedStatsHelper();
+                if (cachedStatsHelper != null) {
+                    return cachedStatsHelper;
+                }
+                generation = mGeneration;
+            }
+
+            final long refreshTimeMs = SystemClock.elapsedRealtime();
+            final BatteryStatsHelper statsHelper = new BatteryStatsHelper(context,
+                    true /* collectBatteryBroadcast */);
+            batteryUtils.initBatteryStatsHelper(statsHelper, null /* bundle */, userManager);
+
+            synchronized (this) {
+                if (generation == mGeneration) {
+                    mStatsHelper = statsHelper;
+                    mRefreshTimeMs = refreshTimeMs;
+                }
+            }
+            return statsHelper;
+        }
+    }
+
+    /**
+     * @return the cached {@link BatteryStatsHelper}, or {@code null} if there is none or it is
+     * older than the TTL.
+     */
+    public synchronized BatteryStatsHelper getCachedStatsHelper() {
+        if (mStatsHelper != null
+                && SystemClock.elapsedRealtime() - mRefreshTimeMs >= mTtlMs) {
+            mStatsHelper = null;
+        }
+        return mStatsHelper;
+    }
+
+    /**
+     * Drop the cached snapshot, including one being refreshed now.
+     */
+    public synchronized void invalidate() {
+        mStatsHelper = null;
+        mGeneration++;
+    }
+}
@@ -25,7 +25,8 @@ import com.android.internal.os.BatteryStatsHelper;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 /**
- * Loader to get new {@link BatteryStatsHelper} in the background
+ * Loader to get a refreshed {@link BatteryStatsHelper} in the background, shared with the other
+ * battery screens through {@link BatteryStatsHelperCache}
  */
 public class BatteryStatsHelperLoader extends AsyncLoaderCompat<BatteryStatsHelper> {
     @VisibleForTesting
@@ -41,12 +42,8 @@ public class BatteryStatsHelperLoader extends AsyncLoaderCompat<BatteryStatsHelp
 
     @Override
     public BatteryStatsHelper loadInBackground() {
-        Context context = getContext();
-        final BatteryStatsHelper statsHelper = new BatteryStatsHelper(context,
-                true /* collectBatteryBroadcast */);
-        mBatteryUtils.initBatteryStatsHelper(statsHelper, null /* bundle */, mUserManager);
-
-        return statsHelper;
+        return BatteryStatsHelperCache.getInstance().getStatsHelper(getContext(), mBatteryUtils,
+                mUserManager);
     }
 
     @Override
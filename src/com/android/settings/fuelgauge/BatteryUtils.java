@@ -208,6 +208,20 @@ public class BatteryUtils {
         return proportionalSmearPowerMah;
     }
 
+    /**
+     * Copy {@code sipper}, so that it can be changed, e.g. by
+     * {@link #removeHiddenBatterySippers(List)}, without changing the {@link BatteryStatsHelper}
+     * it comes from, which may be shared through {@link BatteryStatsHelperCache}.
+     */
+    public static BatterySipper copyBatterySipper(BatterySipper sipper) {
+        final BatterySipper copy = new BatterySipper(sipper.drainType, sipper.uidObj, 0.0);
+        copy.add(sipper);
+        copy.userId = sipper.userId;
+        copy.packageWithHighestDrain = sipper.packageWithHighestDrain;
+        copy.mPackages = sipper.mPackages;
+        return copy;
+    }
+
     /**
      * Smear the screen on power usage among {@code sippers}, based on ratio of foreground activity
      * time.
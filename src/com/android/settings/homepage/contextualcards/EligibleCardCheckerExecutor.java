@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link EligibleCardChecker}s for the homepage on a shared, bounded pool of threads.
+ *
+ * Checks of the same slice {@link Uri} which are still running are shared between loads, and
+ * finished results are reused for {@link #RESULT_TTL_MS} so that going back to the homepage
+ * doesn't bind every card slice again.
+ */
+class EligibleCardCheckerExecutor {
+
+    private static final String TAG = "EligibleCardCheckerExec";
+    private static final int MAX_THREADS = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    @VisibleForTesting
+    static final long RESULT_TTL_MS = 10000;
+
+    private static EligibleCardCheckerExecutor sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<Uri, CompletableFuture<ContextualCard>> mPendingChecks = new ArrayMap<>();
+    private final Map<Uri, CachedResult> mResults = new ArrayMap<>();
+
+    static synchronized EligibleCardCheckerExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new EligibleCardCheckerExecutor();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    EligibleCardCheckerExecutor() {
+        mExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, TAG));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Checks whether the card is eligible for display.
+     *
+     * @return a future of the card to display, or of {@code null} if it is not eligible. The
+     * future can be abandoned on timeout, the check keeps running and its result is cached.
+     */
+    Future<ContextualCard> submit(Context context, ContextualCard card) {
+        if (card.getRankingScore() < 0) {
+            // Not eligible regardless of its slice, nothing to bind.
+            return CompletableFuture.completedFuture(createChecker(context, card).call());
+        }
+
+        final Uri uri = card.getSliceUri();
+        synchronized (this) {
+            final CachedResult cached = mResults.get(uri);
+            if (cached != null) {
+                if (SystemClock.elapsedRealtime() - cached.mTimestamp < RESULT_TTL_MS) {
+                    return CompletableFuture.completedFuture(applyResult(card, cached.mCard));
+                }
+                mResults.remove(uri);
+            }
+
+            CompletableFuture<ContextualCard> check = mPendingChecks.get(uri);
+            if (check == null) {
+                final EligibleCardChecker checker = createChecker(context, card);
+                check = CompletableFuture.supplyAsync(() -> runCheck(uri, checker), mExecutor);
+                mPendingChecks.put(uri, check);
+            }
+            return check.thenApply(result -> applyResult(card, result));
+        }
+    }
+
+    @VisibleForTesting
+    EligibleCardChecker createChecker(Context context, ContextualCard card) {
+        return new EligibleCardChecker(context, card);
+    }
+
+    @VisibleForTesting
+    synchronized void clearCachedResults() {
+        mResults.clear();
+    }
+
+    private ContextualCard runCheck(Uri uri, EligibleCardChecker checker) {
+        ContextualCard result = null;
+        boolean finished = false;
+        try {
+            result = checker.call();
+            finished = true;
+            return result;
+        } finally {
+            // Cache before the future completes, so that callers never miss a finished check.
+            synchronized (this) {
+                mPendingChecks.remove(uri);
+                if (finished) {
+                    mResults.put(uri, new CachedResult(result, SystemClock.elapsedRealtime()));
+                }
+            }
+        }
+    }
+
+    /**
+     * The result of a check may come from another card with the same slice uri, only take the
+     * slice and its inline action state from it.
+     */
+    private static ContextualCard applyResult(ContextualCard card, ContextualCard result) {
+        if (result == null) {
+            return null;
+        }
+        return card.mutate()
+                .setSlice(result.getSlice())
+                .setHasInlineAction(result.hasInlineAction())
+                .build();
+    }
+
+    private static class CachedResult {
+        private final ContextualCard mCard;
+        private final long mTimestamp;
+
+        CachedResult(ContextualCard card, long timestamp) {
+            mCard = card;
+            mTimestamp = timestamp;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.app.settings.SettingsEnums;
+import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -43,6 +44,7 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.slice.Slice;
@@ -53,6 +55,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.panel.PanelLoggingContract.PanelClosedKeys;
+import com.android.settings.slices.SettingsSliceProvider;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -105,6 +108,9 @@ public class PanelFragment extends Fragment {
     @VisibleForTesting
     PanelSlicesLoaderCountdownLatch mPanelSlicesLoaderCountdownLatch;
 
+    @VisibleForTesting
+    PanelSlicePool mSlicePool = PanelSlicePool.getInstance();
+
     private ViewTreeObserver.OnPreDrawListener mOnPreDrawListener = () -> {
         return false;
     };
@@ -300,20 +306,30 @@ public class PanelFragment extends Fragment {
         mSliceLiveData.clear();
         final List<Uri> sliceUris = mPanel.getSlices();
         mPanelSlicesLoaderCountdownLatch = new PanelSlicesLoaderCountdownLatch(sliceUris.size());
+        // Bind the Slices together, their LiveData bind them one after another.
+        final Context appContext = getActivity().getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(
+                () -> SettingsSliceProvider.prebindSlices(appContext, sliceUris));
 
         for (Uri uri : sliceUris) {
-            final LiveData<Slice> sliceLiveData = SliceLiveData.fromUri(getActivity(), uri,
+            final LiveData<Slice> boundSliceLiveData = SliceLiveData.fromUri(getActivity(), uri,
                     (int type, Throwable source)-> {
+                            mSlicePool.remove(uri);
                             removeSliceLiveData(uri);
                             mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
                     });
+            final LiveData<Slice> sliceLiveData = getPooledSliceLiveData(uri, boundSliceLiveData);
 
             // Add slice first to make it in order.  Will remove it later if there's an error.
             mSliceLiveData.put(uri, sliceLiveData);
 
             sliceLiveData.observe(getViewLifecycleOwner(), slice -> {
-                // If the Slice has already loaded, do nothing.
+                // If the Slice has already loaded, only remove it if its bind failed, e.g. after
+                // a pooled Slice was shown.
                 if (mPanelSlicesLoaderCountdownLatch.isSliceLoaded(uri)) {
+                    if (slice == null || SliceMetadata.from(getActivity(), slice).isErrorSlice()) {
+                        removeLoadedSliceLiveData(uri);
+                    }
                     return;
                 }
 
@@ -331,6 +347,9 @@ public class PanelFragment extends Fragment {
                  *     it as loaded after 250ms timeout to avoid delay showing up the panel for
                  *     too long.  Since we are still having the Slice data in the list, the Slice
                  *     will show up later once it is loaded.
+                 * <p>
+                 *     A Slice from {@link PanelSlicePool} is fully loaded, so a panel opened again
+                 *     shows up without waiting for the bind, and the Slice is updated in place.
                  */
                 final SliceMetadata metadata = SliceMetadata.from(getActivity(), slice);
                 if (slice == null || metadata.isErrorSlice()) {
@@ -351,6 +370,39 @@ public class PanelFragment extends Fragment {
         }
     }
 
+    /**
+     * @return a {@link LiveData} starting with the pooled {@link Slice} of {@param uri}, if any,
+     * then following {@param boundSliceLiveData}, whose fully loaded Slices are pooled for the
+     * next time the panel opens.
+     */
+    private LiveData<Slice> getPooledSliceLiveData(Uri uri, LiveData<Slice> boundSliceLiveData) {
+        final MediatorLiveData<Slice> sliceLiveData = new MediatorLiveData<>();
+        final Slice pooledSlice = mSlicePool.get(uri);
+        if (pooledSlice != null) {
+            sliceLiveData.setValue(pooledSlice);
+        }
+        sliceLiveData.addSource(boundSliceLiveData, slice -> {
+            final SliceMetadata metadata =
+                    slice == null ? null : SliceMetadata.from(getActivity(), slice);
+            // A Slice with toggles is not pooled, their actions would apply its old state.
+            if (metadata == null || metadata.isErrorSlice() || !metadata.getToggles().isEmpty()) {
+                mSlicePool.remove(uri);
+            } else if (metadata.getLoadingState() == SliceMetadata.LOADED_ALL) {
+                mSlicePool.put(uri, slice);
+            }
+            sliceLiveData.setValue(slice);
+        });
+        return sliceLiveData;
+    }
+
+    private void removeLoadedSliceLiveData(Uri uri) {
+        final LiveData<Slice> sliceLiveData = mSliceLiveData.get(uri);
+        removeSliceLiveData(uri);
+        if (mAdapter != null && sliceLiveData != null && !mSliceLiveData.containsKey(uri)) {
+            mAdapter.removeSliceLiveData(sliceLiveData);
+        }
+    }
+
     private void removeSliceLiveData(Uri uri) {
         final List<String> whiteList = Arrays.asList(
                 getResources().getStringArray(
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.panel;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+/**
+ * Keeps the last fully loaded {@link Slice} of each panel {@link Uri}, so that a panel opened
+ * again can show its Slices right away while they are bound again.
+ *
+ * A {@link Slice} older than {@link #MAX_AGE_MS} is not shown, as it may be too far from the
+ * current state. Slices with toggles are not kept, their actions would apply the old state.
+ */
+class PanelSlicePool {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+
+    private static final int MAX_SLICES = 16;
+
+    private static PanelSlicePool sInstance;
+
+    private final LruCache<Uri, PooledSlice> mSlices = new LruCache<>(MAX_SLICES);
+    private final long mMaxAgeMs;
+
+    static synchronized PanelSlicePool getInstance() {
+        if (sInstance == null) {
+            sInstance = new PanelSlicePool(MAX_AGE_MS);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PanelSlicePool(long maxAgeMs) {
+        mMaxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * @return the last loaded {@link Slice} of {@param uri}, or {@code null} if there is none or
+     * it is too old.
+     */
+    Slice get(Uri uri) {
+        final PooledSlice pooledSlice = mSlices.get(uri);
+        if (pooledSlice == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - pooledSlice.mBoundTimeMs > mMaxAgeMs) {
+            mSlices.remove(uri);
+            return null;
+        }
+        return pooledSlice.mSlice;
+    }
+
+    /**
+     * Keep {@param slice}, just loaded for {@param uri}.
+     */
+    void put(Uri uri, Slice slice) {
+        mSlices.put(uri, new PooledSlice(slice, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Forget the {@link Slice} of {@param uri}, e.g. when it failed to load.
+     */
+    void remove(Uri uri) {
+        mSlices.remove(uri);
+    }
+
+    private static class PooledSlice {
+        private final Slice mSlice;
+        private final long mBoundTimeMs;
+
+        private PooledSlice(Slice slice, long boundTimeMs) {
+            mSlice = slice;
+            mBoundTimeMs = boundTimeMs;
+        }
+    }
+}
@@ -102,6 +102,16 @@ public class PanelSlicesAdapter
         return mPanelFragment.getPanelViewType();
     }
 
+    /**
+     * Remove the row of {@param sliceLiveData}, e.g. when its Slice failed to load after a pooled
+     * Slice was shown.
+     */
+    void removeSliceLiveData(LiveData<Slice> sliceLiveData) {
+        if (mSliceLiveData.remove(sliceLiveData)) {
+            notifyDataSetChanged();
+        }
+    }
+
     /**
      * Return the available data from the adapter. If the number of Slices over the max number
      * allowed, the list will only have the first MAX_NUM_OF_SLICES of slices.
@@ -127,6 +127,15 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         return nonIndexableKeys;
     }
 
+    /**
+     * Returns what the result of {@link #getNonIndexableKeys(Context)} depends on, so that it can
+     * be cached by {@link NonIndexableKeysCache} until one of them changes. Returns {@code null}
+     * by default, meaning the keys are computed on every query.
+     */
+    public NonIndexableKeysCache.Dependencies getNonIndexableKeysDependencies(Context context) {
+        return null;
+    }
+
     public List<AbstractPreferenceController> getPreferenceControllers(Context context) {
         final List<AbstractPreferenceController> controllersFromCode =
                 createPreferenceControllers(context);
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memoizes the non-indexable keys of each search index provider, and drops them when one of the
+ * {@link Dependencies} declared by the provider changes.
+ *
+ * Providers which don't declare any dependencies are never cached.
+ */
+public class NonIndexableKeysCache {
+
+    private static final String TAG = "NonIndexableKeysCache";
+
+    private static NonIndexableKeysCache sInstance;
+
+    private final Context mContext;
+    private final Map<String, List<String>> mEntries = new ArrayMap<>();
+    private final Map<Uri, Set<String>> mUriDependents = new ArrayMap<>();
+    private final Set<String> mPackageDependents = new ArraySet<>();
+    private final Set<String> mUserDependents = new ArraySet<>();
+    private boolean mPackageReceiverRegistered;
+    private boolean mUserReceiverRegistered;
+    // Bumped on every invalidation so that keys computed before it are not stored.
+    private long mGeneration;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mInvalidationCount;
+
+    public static synchronized NonIndexableKeysCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NonIndexableKeysCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NonIndexableKeysCache(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return a copy of the cached keys of the provider, or {@code null} on a cache miss.
+     */
+    public synchronized List<String> get(String providerName) {
+        final List<String> keys = mEntries.get(providerName);
+        if (keys == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #put} once the keys are computed.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores the keys of the provider, unless an invalidation happened since {@code generation}
+     * was read, in which case the keys may already be stale.
+     */
+    public synchronized void put(String providerName, List<String> keys,
+            Dependencies dependencies, long generation) {
+        if (dependencies == null || dependencies.isEmpty() || generation != mGeneration) {
+            return;
+        }
+        for (Uri uri : dependencies.mUris) {
+            Set<String> dependents = mUriDependents.get(uri);
+            if (dependents == null) {
+                dependents = new ArraySet<>();
+                mUriDependents.put(uri, dependents);
+                registerContentObserver(uri);
+            }
+            dependents.add(providerName);
+        }
+        if (dependencies.mDependsOnPackages) {
+            mPackageDependents.add(providerName);
+            registerPackageReceiver();
+        }
+        if (dependencies.mDependsOnUsers) {
+            mUserDependents.add(providerName);
+            registerUserReceiver();
+        }
+        mEntries.put(providerName, keys == null
+                ? Collections.emptyList() : new ArrayList<>(keys));
+    }
+
+    /**
+     * @return hit, miss and invalidation counts, to be dumped by
+     * {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dumpStats() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("hits", mHitCount);
+        obj.put("misses", mMissCount);
+        obj.put("invalidations", mInvalidationCount);
+        obj.put("entries", mEntries.size());
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized void invalidate(Set<String> providerNames) {
+        if (providerNames == null || providerNames.isEmpty()) {
+            return;
+        }
+        mGeneration++;
+        for (String providerName : providerNames) {
+            if (mEntries.remove(providerName) != null) {
+                mInvalidationCount++;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void onUriChanged(Uri uri) {
+        invalidate(mUriDependents.get(uri));
+    }
+
+    @VisibleForTesting
+    synchronized void onPackagesChanged() {
+        invalidate(mPackageDependents);
+    }
+
+    @VisibleForTesting
+    synchronized void onUsersChanged() {
+        invalidate(mUserDependents);
+    }
+
+    private void registerContentObserver(Uri uri) {
+        mContext.getContentResolver().registerContentObserver(uri, false /* notifyDescendants */,
+                new ContentObserver(null /* handler */) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri changedUri) {
+                        onUriChanged(uri);
+                    }
+                });
+    }
+
+    private void registerPackageReceiver() {
+        if (mPackageReceiverRegistered) {
+            return;
+        }
+        mPackageReceiverRegistered = true;
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Log.d(TAG, "Packages changed: " + intent.getAction());
+                onPackagesChanged();
+            }
+        }, filter);
+    }
+
+    private void registerUserReceiver() {
+        if (mUserReceiverRegistered) {
+            return;
+        }
+        mUserReceiverRegistered = true;
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_USER_ADDED);
+        filter.addAction(Intent.ACTION_USER_REMOVED);
+        filter.addAction(Intent.ACTION_USER_SWITCHED);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_ADDED);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_REMOVED);
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Log.d(TAG, "Users changed: " + intent.getAction());
+                onUsersChanged();
+            }
+        }, filter);
+    }
+
+    /**
+     * What the non-indexable keys of a provider depend on. A provider's cached keys are dropped
+     * whenever one of them changes.
+     */
+    public static class Dependencies {
+        private final List<Uri> mUris = new ArrayList<>();
+        private boolean mDependsOnPackages;
+        private boolean mDependsOnUsers;
+
+        /**
+         * Adds a content {@link Uri}, typically from {@link android.provider.Settings}.
+         */
+        public Dependencies addUri(Uri uri) {
+            mUris.add(uri);
+            return this;
+        }
+
+        /**
+         * Depends on packages being installed, removed or changed.
+         */
+        public Dependencies dependOnPackages() {
+            mDependsOnPackages = true;
+            return this;
+        }
+
+        /**
+         * Depends on users or profiles being added, removed or switched.
+         */
+        public Dependencies dependOnUsers() {
+            mDependsOnUsers = true;
+            return this;
+        }
+
+        boolean isEmpty() {
+            return mUris.isEmpty() && !mDependsOnPackages && !mDependsOnUsers;
+        }
+    }
+}
@@ -75,7 +75,6 @@ import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexableData;
 import com.android.settingslib.search.SearchIndexableRaw;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -105,23 +104,14 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return true;
     }
 
+    /**
+     * Gets a Cursor of xml resources. Rows are added to the cursor provider by provider, so that
+     * only one provider's output is held in memory besides the cursor itself.
+     */
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
-        final List<SearchIndexableResource> resources =
-                getSearchIndexableResourcesFromProvider(getContext());
-        for (SearchIndexableResource val : resources) {
-            final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
-            ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
-            ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
-            ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
-            ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
-            ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
-            cursor.addRow(ref);
-        }
-
+        addSearchIndexableResourcesFromProvider(getContext(), cursor);
         return cursor;
     }
 
@@ -131,11 +121,7 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryRawData(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(getContext());
-        for (SearchIndexableRaw val : raws) {
-            cursor.addRow(createIndexableRawColumnObjects(val));
-        }
-
+        addSearchIndexableRawFromProvider(getContext(), cursor);
         return cursor;
     }
 
@@ -147,13 +133,7 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryNonIndexableKeys(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(NON_INDEXABLES_KEYS_COLUMNS);
-        final List<String> nonIndexableKeys = getNonIndexableKeysFromProvider(getContext());
-        for (String nik : nonIndexableKeys) {
-            final Object[] ref = new Object[NON_INDEXABLES_KEYS_COLUMNS.length];
-            ref[COLUMN_INDEX_NON_INDEXABLE_KEYS_KEY_VALUE] = nik;
-            cursor.addRow(ref);
-        }
-
+        addNonIndexableKeysFromProvider(getContext(), cursor);
         return cursor;
     }
 
@@ -165,15 +145,9 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryDynamicRawData(String[] projection) {
         final Context context = getContext();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
-        rawList.addAll(getDynamicSearchIndexableRawFromProvider(context));
-        rawList.addAll(getInjectionIndexableRawData(context));
-
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        for (SearchIndexableRaw raw : rawList) {
-            cursor.addRow(createIndexableRawColumnObjects(raw));
-        }
-
+        addDynamicSearchIndexableRawFromProvider(context, cursor);
+        addInjectionIndexableRawData(context, cursor);
         return cursor;
     }
 
@@ -252,62 +226,87 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return cursor;
     }
 
-    private List<String> getNonIndexableKeysFromProvider(Context context) {
+    private void addNonIndexableKeysFromProvider(Context context, MatrixCursor cursor) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
+        // MatrixCursor copies the values of each row, so a single row buffer can be reused.
+        final Object[] ref = new Object[NON_INDEXABLES_KEYS_COLUMNS.length];
         for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
+            final List<String> providerNonIndexableKeys =
+                    getNonIndexableKeysFromProvider(context, bundle);
+            if (providerNonIndexableKeys == null) {
                 continue;
             }
-
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
+            for (String nik : providerNonIndexableKeys) {
+                ref[COLUMN_INDEX_NON_INDEXABLE_KEYS_KEY_VALUE] = nik;
+                cursor.addRow(ref);
             }
+        }
+    }
 
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
+    private List<String> getNonIndexableKeysFromProvider(Context context,
+            SearchIndexableData bundle) {
+        final String providerName = bundle.getTargetClass().getName();
+        final NonIndexableKeysCache cache = NonIndexableKeysCache.getInstance(context);
+        final List<String> cachedKeys = cache.get(providerName);
+        if (cachedKeys != null) {
+            return cachedKeys;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final long cacheGeneration = cache.getGeneration();
+        Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        List<String> providerNonIndexableKeys;
+        try {
+            providerNonIndexableKeys = provider.getNonIndexableKeys(context);
+        } catch (Exception e) {
+            // Catch a generic crash. In the absence of the catch, the background thread will
+            // silently fail anyway, so we aren't losing information by catching the exception.
+            // We crash when the system property exists so that we can test if crashes need to
+            // be fixed.
+            // The gain is that if there is a crash in a specific controller, we don't lose all
+            // non-indexable keys, but we can still find specific crashes in development.
+            if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
+                throw new RuntimeException(e);
             }
+            Log.e(TAG, "Error trying to get non-indexable keys from: " + providerName, e);
+            return null;
+        }
+
+        if (providerNonIndexableKeys != null
+                && providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
+            Log.v(TAG, provider + " tried to add an empty non-indexable key");
+        }
 
+        if (provider instanceof BaseSearchIndexProvider) {
+            cache.put(providerName, providerNonIndexableKeys,
+                    ((BaseSearchIndexProvider) provider).getNonIndexableKeysDependencies(context),
+                    cacheGeneration);
+        }
+
+        if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
             if (DEBUG) {
                 final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
+                Log.d(TAG, "No indexable, total time " + totalTime);
             }
+            return null;
+        }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+        if (DEBUG) {
+            final long totalTime = System.currentTimeMillis() - startTime;
+            Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
+                    + totalTime);
         }
 
-        return nonIndexableKeys;
+        return providerNonIndexableKeys;
     }
 
-    private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
+    private void addSearchIndexableResourcesFromProvider(Context context, MatrixCursor cursor) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        List<SearchIndexableResource> resourceList = new ArrayList<>();
 
+        final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
         for (SearchIndexableData bundle : bundles) {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableResource> resList =
@@ -317,23 +316,27 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 continue;
             }
 
-            for (SearchIndexableResource item : resList) {
-                item.className = TextUtils.isEmpty(item.className)
+            for (SearchIndexableResource val : resList) {
+                val.className = TextUtils.isEmpty(val.className)
                         ? bundle.getTargetClass().getName()
-                        : item.className;
+                        : val.className;
+                ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
+                ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
+                ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
+                ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
+                ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
+                ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
+                ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
+                cursor.addRow(ref);
             }
-
-            resourceList.addAll(resList);
         }
-
-        return resourceList;
     }
 
-    private List<SearchIndexableRaw> getSearchIndexableRawFromProvider(Context context) {
+    private void addSearchIndexableRawFromProvider(Context context, MatrixCursor cursor) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
 
+        final Object[] ref = new Object[INDEXABLES_RAW_COLUMNS.length];
         for (SearchIndexableData bundle : bundles) {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
@@ -347,19 +350,18 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 // The classname and intent information comes from the PreIndexData
                 // This will be more clear when provider conversion is done at PreIndex time.
                 raw.className = bundle.getTargetClass().getName();
-
+                fillIndexableRawColumnObjects(raw, ref);
+                cursor.addRow(ref);
             }
-            rawList.addAll(providerRaws);
         }
-
-        return rawList;
     }
 
-    private List<SearchIndexableRaw> getDynamicSearchIndexableRawFromProvider(Context context) {
+    private void addDynamicSearchIndexableRawFromProvider(Context context,
+            MatrixCursor cursor) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
 
+        final Object[] ref = new Object[INDEXABLES_RAW_COLUMNS.length];
         for (SearchIndexableData bundle : bundles) {
             final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableRaw> providerRaws =
@@ -373,19 +375,17 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 // The classname and intent information comes from the PreIndexData
                 // This will be more clear when provider conversion is done at PreIndex time.
                 raw.className = bundle.getTargetClass().getName();
-
+                fillIndexableRawColumnObjects(raw, ref);
+                cursor.addRow(ref);
             }
-            rawList.addAll(providerRaws);
         }
-
-        return rawList;
     }
 
-    private List<SearchIndexableRaw> getInjectionIndexableRawData(Context context) {
+    private void addInjectionIndexableRawData(Context context, MatrixCursor cursor) {
         final DashboardFeatureProvider dashboardFeatureProvider =
                 FeatureFactory.getFactory(context).getDashboardFeatureProvider(context);
 
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
+        final Object[] ref = new Object[INDEXABLES_RAW_COLUMNS.length];
         final String currentPackageName = context.getPackageName();
         for (DashboardCategory category : dashboardFeatureProvider.getAllCategories()) {
             for (Tile tile : category.getTiles()) {
@@ -403,11 +403,10 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 raw.summaryOn = TextUtils.isEmpty(summary) ? null : summary.toString();
                 raw.summaryOff = raw.summaryOn;
                 raw.className = CATEGORY_KEY_TO_PARENT_MAP.get(tile.getCategory());
-                rawList.add(raw);
+                fillIndexableRawColumnObjects(raw, ref);
+                cursor.addRow(ref);
             }
         }
-
-        return rawList;
     }
 
     @VisibleForTesting
@@ -424,8 +423,7 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return true;
     }
 
-    private static Object[] createIndexableRawColumnObjects(SearchIndexableRaw raw) {
-        final Object[] ref = new Object[INDEXABLES_RAW_COLUMNS.length];
+    private static void fillIndexableRawColumnObjects(SearchIndexableRaw raw, Object[] ref) {
         ref[COLUMN_INDEX_RAW_TITLE] = raw.title;
         ref[COLUMN_INDEX_RAW_SUMMARY_ON] = raw.summaryOn;
         ref[COLUMN_INDEX_RAW_SUMMARY_OFF] = raw.summaryOff;
@@ -439,6 +437,5 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         ref[COLUMN_INDEX_RAW_INTENT_TARGET_CLASS] = raw.intentTargetClass;
         ref[COLUMN_INDEX_RAW_KEY] = raw.key;
         ref[COLUMN_INDEX_RAW_USER_ID] = raw.userId;
-        return ref;
     }
 }
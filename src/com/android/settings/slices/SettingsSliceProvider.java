@@ -20,14 +20,18 @@ import static android.Manifest.permission.READ_SEARCH_INDEXABLES;
 
 import android.app.PendingIntent;
 import android.app.slice.SliceManager;
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
@@ -61,6 +65,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -88,6 +98,16 @@ public class SettingsSliceProvider extends SliceProvider {
 
     private static final String TAG = "SettingsSliceProvider";
 
+    /**
+     * How long a {@link Slice} built by {@link #prebindSlices(List)} is used for, in milliseconds.
+     */
+    private static final long PREBOUND_SLICE_TIMEOUT_MS = 2000L;
+
+    private static final int PREBIND_THREAD_COUNT = 2;
+    private static final long PREBIND_THREAD_KEEP_ALIVE_SECONDS = 10L;
+
+    private static ThreadPoolExecutor sPrebindExecutor;
+
     /**
      * Authority for Settings slices not officially supported by the platform, but extensible for
      * OEMs.
@@ -133,8 +153,6 @@ public class SettingsSliceProvider extends SliceProvider {
                     CustomSliceRegistry.ZEN_MODE_SLICE_URI
             );
 
-    private static final KeyValueListParser KEY_VALUE_LIST_PARSER = new KeyValueListParser(',');
-
     @VisibleForTesting
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
@@ -144,7 +162,30 @@ public class SettingsSliceProvider extends SliceProvider {
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
 
-    private Boolean mNightMode;
+    private volatile Boolean mNightMode;
+
+    // Bumped for a Uri whenever its Slice is bound or its worker reports a change, so that a
+    // Slice prebound before then is never returned.
+    private static final Map<Uri, Integer> sSliceGenerations = new ConcurrentHashMap<>();
+
+    // Slices built by prebindSlices().
+    private final Map<Uri, PreboundSlice> mPreboundSlices = new ConcurrentHashMap<>();
+
+    // SliceData read by prebindSlices(), used once by the bind of their Uri.
+    @VisibleForTesting
+    final Map<Uri, SliceData> mPreboundSliceData = new ConcurrentHashMap<>();
+
+    // Immutable snapshot of the blocked slice keys, swapped when the setting changes.
+    private final AtomicReference<Set<String>> mBlockedKeys = new AtomicReference<>();
+
+    private boolean mBlockedKeysObserverRegistered;
+
+    private final ContentObserver mBlockedKeysObserver = new ContentObserver(null /* handler */) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onBlockedKeysChanged();
+        }
+    };
 
     public SettingsSliceProvider() {
         super(READ_SEARCH_INDEXABLES);
@@ -207,20 +248,19 @@ public class SettingsSliceProvider extends SliceProvider {
                 Log.e(TAG, "Requested blocked slice with Uri: " + sliceUri);
                 return null;
             }
+            SliceBackgroundWorker.onSliceBound(sliceUri);
 
-            final boolean nightMode = Utils.isNightMode(getContext());
-            if (mNightMode == null) {
-                mNightMode = nightMode;
-                getContext().setTheme(R.style.Theme_SettingsBase);
-            } else if (mNightMode != nightMode) {
-                Log.d(TAG, "Night mode changed, reload theme");
-                mNightMode = nightMode;
-                getContext().getTheme().rebase();
-            }
+            updateTheme();
 
             // Before adding a slice to {@link CustomSliceManager}, please get approval
             // from the Settings team.
             if (CustomSliceRegistry.isValidUri(sliceUri)) {
+                final Slice preboundSlice = takePreboundSlice(sliceUri);
+                // Any later prebound Slice was requested before this bind, so it's outdated.
+                invalidatePreboundSlice(sliceUri);
+                if (preboundSlice != null) {
+                    return preboundSlice;
+                }
                 final Context context = getContext();
                 return FeatureFactory.getFactory(context)
                         .getSlicesFeatureProvider().getSliceableFromUri(context, sliceUri)
@@ -248,7 +288,10 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            if (cachedSliceData == null) {
+                cachedSliceData = mPreboundSliceData.remove(sliceUri);
+            }
             if (cachedSliceData == null) {
                 loadSliceInBackground(sliceUri);
                 return getSliceStub(sliceUri);
@@ -264,6 +307,137 @@ public class SettingsSliceProvider extends SliceProvider {
         }
     }
 
+    /**
+     * Bind the {@param sliceUris} of a consumer showing several Slices together, e.g. a panel,
+     * from any thread and whether or not this process hosts the provider.
+     *
+     * @see #prebindSlices(List)
+     */
+    public static void prebindSlices(Context context, List<Uri> sliceUris) {
+        final ContentResolver resolver = context.getContentResolver();
+        for (String authority : new String[]{SLICE_AUTHORITY, SettingsSlicesContract.AUTHORITY}) {
+            final List<Uri> authorityUris = sliceUris.stream()
+                    .filter(uri -> uri != null && TextUtils.equals(authority, uri.getAuthority()))
+                    .collect(Collectors.toList());
+            if (authorityUris.isEmpty()) {
+                continue;
+            }
+            try (ContentProviderClient client =
+                         resolver.acquireContentProviderClient(authority)) {
+                final ContentProvider provider =
+                        client == null ? null : client.getLocalContentProvider();
+                if (provider instanceof SettingsSliceProvider) {
+                    ((SettingsSliceProvider) provider).prebindSlices(authorityUris);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bind the {@param sliceUris} in one pass, ahead of their {@link #onBindSlice(Uri)}.
+     * <p>
+     * The blocked keys are checked once and the {@link SliceData} of the indexed Slices are read
+     * together and kept for their bind. The {@link CustomSliceable}s are built concurrently on a
+     * dedicated executor, once the bind path has set the theme, and a {@link Slice} built there is
+     * returned by the next bind of its {@link Uri} if it happens within
+     * {@link #PREBOUND_SLICE_TIMEOUT_MS}. This method does not wait for them.
+     */
+    @VisibleForTesting
+    void prebindSlices(List<Uri> sliceUris) {
+        final long startTime = System.currentTimeMillis();
+        final Set<String> blockedKeys = getBlockedKeys();
+        final Context context = getContext();
+        // Custom Slices use the theme of the context, which only the bind path updates.
+        final boolean themeReady = mNightMode != null
+                && mNightMode == Utils.isNightMode(context);
+
+        for (Uri uri : sliceUris) {
+            if (blockedKeys.contains(uri.getLastPathSegment())) {
+                continue;
+            }
+            if (CustomSliceRegistry.isValidUri(uri)) {
+                if (!themeReady) {
+                    continue;
+                }
+                final CustomSliceable sliceable = FeatureFactory.getFactory(context)
+                        .getSlicesFeatureProvider().getSliceableFromUri(context, uri);
+                final int generation = getSliceGeneration(uri);
+                getPrebindExecutor().execute(() -> {
+                    final Slice slice = sliceable.getSlice();
+                    // Not kept if the Uri was bound or changed while it was being built.
+                    if (slice != null && generation == getSliceGeneration(uri)) {
+                        mPreboundSlices.put(uri, new PreboundSlice(slice, generation,
+                                SystemClock.elapsedRealtime()));
+                    }
+                });
+            } else if (!mPreboundSliceData.containsKey(uri)) {
+                try {
+                    mPreboundSliceData.put(uri, mSlicesDatabaseAccessor.getSliceDataFromUri(uri));
+                } catch (IllegalStateException e) {
+                    Log.d(TAG, "Could not prebind slice for uri: " + uri, e);
+                }
+            }
+        }
+        Log.d(TAG, "Prebound " + sliceUris.size() + " slices in: "
+                + (System.currentTimeMillis() - startTime));
+    }
+
+    private static synchronized Executor getPrebindExecutor() {
+        if (sPrebindExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(PREBIND_THREAD_COUNT,
+                    PREBIND_THREAD_COUNT, PREBIND_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sPrebindExecutor = executor;
+        }
+        return sPrebindExecutor;
+    }
+
+    /**
+     * Discard the Slice prebound for {@param uri}, if any, as its content is outdated. Called when
+     * the Slice is bound or when its {@link SliceBackgroundWorker} reports a change.
+     */
+    static void invalidatePreboundSlice(Uri uri) {
+        sSliceGenerations.merge(uri, 1, Integer::sum);
+    }
+
+    private static int getSliceGeneration(Uri uri) {
+        final Integer generation = sSliceGenerations.get(uri);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * @return the Slice prebound for {@param uri} if it's still current, only once.
+     */
+    @VisibleForTesting
+    Slice takePreboundSlice(Uri uri) {
+        final PreboundSlice preboundSlice = mPreboundSlices.remove(uri);
+        if (preboundSlice == null || preboundSlice.mGeneration != getSliceGeneration(uri)
+                || SystemClock.elapsedRealtime() - preboundSlice.mBuildTimeMs
+                > PREBOUND_SLICE_TIMEOUT_MS) {
+            return null;
+        }
+        return preboundSlice.mSlice;
+    }
+
+    @VisibleForTesting
+    void putPreboundSlice(Uri uri, Slice slice) {
+        mPreboundSlices.put(uri, new PreboundSlice(slice, getSliceGeneration(uri),
+                SystemClock.elapsedRealtime()));
+    }
+
+    private void updateTheme() {
+        final boolean nightMode = Utils.isNightMode(getContext());
+        if (mNightMode == null) {
+            mNightMode = nightMode;
+            getContext().setTheme(R.style.Theme_SettingsBase);
+        } else if (mNightMode != nightMode) {
+            Log.d(TAG, "Night mode changed, reload theme");
+            mNightMode = nightMode;
+            getContext().getTheme().rebase();
+        }
+    }
+
     /**
      * Get a list of all valid Uris based on the keys indexed in the Slices database.
      * <p>
@@ -372,9 +546,25 @@ public class SettingsSliceProvider extends SliceProvider {
 
     @Override
     public void shutdown() {
+        final Context context = getContext();
+        if (context != null) {
+            // ContentProvider#shutdown() is only called by unit tests, the indexing is otherwise
+            // stopped by the process being killed. Don't leave it running across tests.
+            final SliceDataConverter converter = FeatureFactory.getFactory(context)
+                    .getSlicesFeatureProvider().getSliceDataConverter(context);
+            if (converter != null) {
+                converter.cancel();
+            }
+        }
         ThreadUtils.postOnMainThread(() -> {
             SliceBackgroundWorker.shutdown();
         });
+        synchronized (mBlockedKeysObserver) {
+            if (mBlockedKeysObserverRegistered) {
+                context.getContentResolver().unregisterContentObserver(mBlockedKeysObserver);
+                mBlockedKeysObserverRegistered = false;
+            }
+        }
     }
 
     @VisibleForTesting
@@ -427,22 +617,50 @@ public class SettingsSliceProvider extends SliceProvider {
                 intentFilter);
     }
 
+    /**
+     * @return the keys of the blocked slices. The setting is read once, and then again only
+     * when it changes.
+     */
     @VisibleForTesting
     Set<String> getBlockedKeys() {
+        final Set<String> blockedKeys = mBlockedKeys.get();
+        if (blockedKeys != null) {
+            return blockedKeys;
+        }
+        synchronized (mBlockedKeysObserver) {
+            // Observe before reading, so that a change right after the read is not missed.
+            if (!mBlockedKeysObserverRegistered) {
+                getContext().getContentResolver().registerContentObserver(
+                        Settings.Global.getUriFor(Settings.Global.BLOCKED_SLICES),
+                        false /* notifyForDescendants */, mBlockedKeysObserver);
+                mBlockedKeysObserverRegistered = true;
+            }
+        }
+        // Keep the snapshot of the observer if it was set meanwhile.
+        mBlockedKeys.compareAndSet(null, loadBlockedKeys());
+        return mBlockedKeys.get();
+    }
+
+    @VisibleForTesting
+    void onBlockedKeysChanged() {
+        mBlockedKeys.set(loadBlockedKeys());
+    }
+
+    private Set<String> loadBlockedKeys() {
         final String value = Settings.Global.getString(getContext().getContentResolver(),
                 Settings.Global.BLOCKED_SLICES);
         final Set<String> set = new ArraySet<>();
 
         try {
-            KEY_VALUE_LIST_PARSER.setString(value);
+            new KeyValueListParser(',').setString(value);
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Bad Settings Slices Whitelist flags", e);
-            return set;
+            return Collections.unmodifiableSet(set);
         }
 
         final String[] parsedValues = parseStringArray(value);
         Collections.addAll(set, parsedValues);
-        return set;
+        return Collections.unmodifiableSet(set);
     }
 
     @VisibleForTesting
@@ -507,4 +725,16 @@ public class SettingsSliceProvider extends SliceProvider {
         }
         return new String[0];
     }
+
+    private static class PreboundSlice {
+        private final Slice mSlice;
+        private final int mGeneration;
+        private final long mBuildTimeMs;
+
+        PreboundSlice(Slice slice, int generation, long buildTimeMs) {
+            mSlice = slice;
+            mGeneration = generation;
+            mBuildTimeMs = buildTimeMs;
+        }
+    }
 }
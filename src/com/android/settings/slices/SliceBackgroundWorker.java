@@ -33,7 +33,6 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -46,7 +45,8 @@ import java.util.Map;
  * SettingsSliceProvider#shutdown()}.
  *
  * {@link SliceBackgroundWorker} caches the results, uses the cache to compare if there is any data
- * changed, and then notifies the Slice {@link Uri} to update.
+ * changed, and then notifies the Slice {@link Uri} to update, throttled by
+ * {@link SliceUpdateThrottler}.
  *
  * It also stores all instances of all workers to ensure each worker is a Singleton.
  */
@@ -54,8 +54,6 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
 
     private static final String TAG = "SliceBackgroundWorker";
 
-    private static final long SLICE_UPDATE_THROTTLE_INTERVAL = 300L;
-
     private static final Map<Uri, SliceBackgroundWorker> LIVE_WORKERS = new ArrayMap<>();
 
     private final Context mContext;
@@ -173,6 +171,7 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
      * Notify that data was updated and attempt to sync changes to the Slice.
      */
     protected final void notifySliceChange() {
+        SettingsSliceProvider.invalidatePreboundSlice(getUri());
         NotifySliceChangeHandler.getInstance().updateSlice(this);
     }
 
@@ -185,16 +184,28 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
         NotifySliceChangeHandler.getInstance().cancelSliceUpdate(this);
     }
 
+    /**
+     * Called when the Slice of {@param uri} is bound, to let the throttling of its updates know
+     * that its host consumed the last notification.
+     */
+    static void onSliceBound(Uri uri) {
+        final NotifySliceChangeHandler handler = NotifySliceChangeHandler.peekInstance();
+        if (handler != null) {
+            handler.mThrottler.onSliceBound(uri);
+        }
+    }
+
     private static class NotifySliceChangeHandler extends Handler {
 
-        private static final int MSG_UPDATE_SLICE = 1000;
+        private static final int MSG_NOTIFY_SLICES = 1000;
 
         private static NotifySliceChangeHandler sHandler;
 
-        private final Map<Uri, Long> mLastUpdateTimeLookup = Collections.synchronizedMap(
-                new ArrayMap<>());
+        private final SliceUpdateThrottler mThrottler = new SliceUpdateThrottler();
+        // Workers with a pending notification, guarded by this.
+        private final Map<Uri, SliceBackgroundWorker> mWorkers = new ArrayMap<>();
 
-        private static NotifySliceChangeHandler getInstance() {
+        private static synchronized NotifySliceChangeHandler getInstance() {
             if (sHandler == null) {
                 final HandlerThread workerThread = new HandlerThread("NotifySliceChangeHandler",
                         Process.THREAD_PRIORITY_BACKGROUND);
@@ -204,45 +215,55 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
             return sHandler;
         }
 
+        private static synchronized NotifySliceChangeHandler peekInstance() {
+            return sHandler;
+        }
+
         private NotifySliceChangeHandler(Looper looper) {
             super(looper);
         }
 
         @Override
         public void handleMessage(Message msg) {
-            if (msg.what != MSG_UPDATE_SLICE) {
+            if (msg.what != MSG_NOTIFY_SLICES) {
                 return;
             }
 
-            final SliceBackgroundWorker worker = (SliceBackgroundWorker) msg.obj;
-            final Uri uri = worker.getUri();
-            final Context context = worker.getContext();
-            mLastUpdateTimeLookup.put(uri, SystemClock.uptimeMillis());
-            context.getContentResolver().notifyChange(uri, null);
+            final List<SliceBackgroundWorker> workers = new ArrayList<>();
+            synchronized (this) {
+                for (Uri uri : mThrottler.pollDueUris(SystemClock.uptimeMillis())) {
+                    final SliceBackgroundWorker worker = mWorkers.remove(uri);
+                    if (worker != null) {
+                        workers.add(worker);
+                    }
+                }
+                scheduleNotify(mThrottler.getNextDueTime());
+            }
+            for (SliceBackgroundWorker worker : workers) {
+                worker.getContext().getContentResolver().notifyChange(worker.getUri(), null);
+            }
         }
 
-        private void updateSlice(SliceBackgroundWorker worker) {
-            if (hasMessages(MSG_UPDATE_SLICE, worker)) {
-                return;
-            }
+        private synchronized void updateSlice(SliceBackgroundWorker worker) {
+            final Uri uri = worker.getUri();
+            mWorkers.put(uri, worker);
+            scheduleNotify(mThrottler.requestUpdate(uri, SystemClock.uptimeMillis()));
+        }
 
-            final Message message = obtainMessage(MSG_UPDATE_SLICE, worker);
-            final long lastUpdateTime = mLastUpdateTimeLookup.getOrDefault(worker.getUri(), 0L);
-            if (lastUpdateTime == 0L) {
-                // Postpone the first update triggering by onSlicePinned() to avoid being too close
-                // to the first Slice bind.
-                sendMessageDelayed(message, SLICE_UPDATE_THROTTLE_INTERVAL);
-            } else if (SystemClock.uptimeMillis() - lastUpdateTime
-                    > SLICE_UPDATE_THROTTLE_INTERVAL) {
-                sendMessage(message);
-            } else {
-                sendMessageAtTime(message, lastUpdateTime + SLICE_UPDATE_THROTTLE_INTERVAL);
-            }
+        private synchronized void cancelSliceUpdate(SliceBackgroundWorker worker) {
+            final Uri uri = worker.getUri();
+            Log.d(TAG, "Slice " + uri + " notified " + mThrottler.getNotifyCount(uri)
+                    + " times, dropped " + mThrottler.getDroppedUpdateCount(uri) + " updates");
+            mWorkers.remove(uri);
+            mThrottler.remove(uri);
+            scheduleNotify(mThrottler.getNextDueTime());
         }
 
-        private void cancelSliceUpdate(SliceBackgroundWorker worker) {
-            removeMessages(MSG_UPDATE_SLICE, worker);
-            mLastUpdateTimeLookup.remove(worker.getUri());
+        private void scheduleNotify(long dueTimeMs) {
+            removeMessages(MSG_NOTIFY_SLICES);
+            if (dueTimeMs != 0L) {
+                sendEmptyMessageAtTime(MSG_NOTIFY_SLICES, dueTimeMs);
+            }
         }
     };
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.util.LruCache;
+
+import java.util.List;
+
+/**
+ * Bounded LRU cache of the {@link SliceData} stored in the slices index, keyed by slice key.
+ *
+ * The cached {@link SliceData} have no {@link android.net.Uri} and keep the indexed slice type.
+ * Entries read from the index before an {@link #invalidate()} are dropped, so a reader racing
+ * with the indexer cannot keep stale rows.
+ */
+class SliceDataCache {
+
+    static final int MAX_SIZE = 500;
+
+    private final LruCache<String, SliceData> mSliceData = new LruCache<>(MAX_SIZE);
+    private int mGeneration;
+    private boolean mWarmedUp;
+
+    synchronized SliceData get(String key) {
+        return mSliceData.get(key);
+    }
+
+    /**
+     * @return the generation to pass to {@link #put} or {@link #putAll} for the rows read after
+     * this call.
+     */
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return {@code true} if the whole index has been read since the last invalidation.
+     */
+    synchronized boolean isWarmedUp() {
+        return mWarmedUp;
+    }
+
+    synchronized void put(SliceData sliceData, int generation) {
+        if (generation == mGeneration) {
+            mSliceData.put(sliceData.getKey(), sliceData);
+        }
+    }
+
+    /**
+     * Cache the rows of a bulk read of the index, and mark the cache as warmed up.
+     */
+    synchronized void putAll(List<SliceData> sliceDataList, int generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        for (SliceData sliceData : sliceDataList) {
+            mSliceData.put(sliceData.getKey(), sliceData);
+        }
+        mWarmedUp = true;
+    }
+
+    /**
+     * Drop every entry, to be called whenever the index changes.
+     */
+    synchronized void invalidate() {
+        mSliceData.evictAll();
+        mWarmedUp = false;
+        mGeneration++;
+    }
+}
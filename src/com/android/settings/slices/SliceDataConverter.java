@@ -35,6 +35,7 @@ import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.SearchIndexableResource;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
@@ -67,12 +68,20 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Converts all Slice sources into {@link SliceData}.
  * This includes:
  * - All {@link DashboardFragment DashboardFragments} indexed by settings search
  * - Accessibility services
+ *
+ * The xml of the search index providers are parsed in parallel on a fork-join pool. The
+ * preference controllers are then created and queried on the calling thread, in provider order,
+ * so that the output does not depend on scheduling.
  */
 class SliceDataConverter {
 
@@ -80,8 +89,16 @@ class SliceDataConverter {
 
     private static final String NODE_NAME_PREFERENCE_SCREEN = "PreferenceScreen";
 
+    /**
+     * Xml taking longer than this to parse are reported in the log.
+     */
+    private static final long SLOW_XML_THRESHOLD_MS = 50;
+
+    private static ForkJoinPool sConversionPool;
+
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private Context mContext;
+    private AtomicBoolean mCurrentCancelSignal;
 
     public SliceDataConverter(Context context) {
         mContext = context;
@@ -104,6 +121,7 @@ class SliceDataConverter {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(mContext)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
+        final List<XmlSource> sources = new ArrayList<>();
         for (SearchIndexableData bundle : bundles) {
             final String fragmentName = bundle.getTargetClass().getName();
 
@@ -115,25 +133,79 @@ class SliceDataConverter {
                 continue;
             }
 
-            final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
-                    fragmentName);
-            sliceData.addAll(providerSliceData);
+            addXmlSourcesFromProvider(provider, fragmentName, sources);
+        }
+
+        final AtomicBoolean cancelSignal = new AtomicBoolean();
+        synchronized (this) {
+            mCurrentCancelSignal = cancelSignal;
+        }
+        final ParsedXml[] parsedXmls = new ParsedXml[sources.size()];
+        final long startTime = SystemClock.elapsedRealtime();
+        try {
+            final ParseXmlAction action =
+                    new ParseXmlAction(sources, parsedXmls, cancelSignal, 0, sources.size());
+            if (sources.size() > 1) {
+                getConversionPool().invoke(action);
+            } else {
+                action.compute();
+            }
+
+            // Controllers are not meant to be used concurrently, so they are created and queried
+            // on this thread, in provider order.
+            for (int i = 0, size = sources.size(); i < size && !cancelSignal.get(); i++) {
+                final XmlSource source = sources.get(i);
+                final ParsedXml parsedXml = parsedXmls[i];
+                if (parsedXml.mElapsedMs > SLOW_XML_THRESHOLD_MS) {
+                    Log.d(TAG, "Parsing xml of " + source.mFragmentName + " took "
+                            + parsedXml.mElapsedMs + " ms");
+                }
+                sliceData.addAll(getSliceDataFromXml(source.mFragmentName, parsedXml));
+            }
+        } finally {
+            synchronized (this) {
+                if (mCurrentCancelSignal == cancelSignal) {
+                    mCurrentCancelSignal = null;
+                }
+            }
         }
+        if (cancelSignal.get()) {
+            throw new CancellationException("Slice data conversion cancelled");
+        }
+        Log.d(TAG, "Converted " + sources.size() + " xml in "
+                + (SystemClock.elapsedRealtime() - startTime) + " ms");
 
         final List<SliceData> a11ySliceData = getAccessibilitySliceData();
         sliceData.addAll(a11ySliceData);
         return sliceData;
     }
 
-    private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
-            String fragmentName) {
-        final List<SliceData> sliceData = new ArrayList<>();
+    /**
+     * Cancels the conversion in progress, if any. The pending {@link #getSliceData()} call then
+     * throws a {@link CancellationException} instead of returning partial data.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (mCurrentCancelSignal != null) {
+                mCurrentCancelSignal.set(true);
+            }
+        }
+    }
+
+    private static synchronized ForkJoinPool getConversionPool() {
+        if (sConversionPool == null) {
+            sConversionPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return sConversionPool;
+    }
 
+    private void addXmlSourcesFromProvider(SearchIndexProvider provider, String fragmentName,
+            List<XmlSource> sources) {
         final List<SearchIndexableResource> resList =
                 provider.getXmlResourcesToIndex(mContext, true /* enabled */);
 
         if (resList == null) {
-            return sliceData;
+            return;
         }
 
         // TODO (b/67996923) get a list of permanent NIKs and skip the invalid keys.
@@ -145,19 +217,17 @@ class SliceDataConverter {
                 continue;
             }
 
-            List<SliceData> xmlSliceData = getSliceDataFromXML(xmlResId, fragmentName);
-            sliceData.addAll(xmlSliceData);
+            sources.add(new XmlSource(fragmentName, xmlResId));
         }
-
-        return sliceData;
     }
 
-    private List<SliceData> getSliceDataFromXML(int xmlResId, String fragmentName) {
+    /**
+     * Parses the screen title and the preference metadata of the xml. Only reads resources, so
+     * that it can run on any thread. A failure is kept in the result, to be reported in order.
+     */
+    private ParsedXml parseXml(int xmlResId) {
+        final long startTime = SystemClock.elapsedRealtime();
         XmlResourceParser parser = null;
-
-        final List<SliceData> xmlSliceData = new ArrayList<>();
-        String controllerClassName = "";
-
         try {
             parser = mContext.getResources().getXml(xmlResId);
 
@@ -189,8 +259,26 @@ class SliceDataConverter {
                             | MetadataFlag.FLAG_NEED_PREF_ICON
                             | MetadataFlag.FLAG_NEED_PREF_SUMMARY
                             | MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE);
+            return new ParsedXml(screenTitle, metadata, null /* error */,
+                    SystemClock.elapsedRealtime() - startTime);
+        } catch (Exception e) {
+            return new ParsedXml(null /* screenTitle */, null /* metadata */, e,
+                    SystemClock.elapsedRealtime() - startTime);
+        } finally {
+            if (parser != null) parser.close();
+        }
+    }
+
+    private List<SliceData> getSliceDataFromXml(String fragmentName, ParsedXml parsedXml) {
+        final List<SliceData> xmlSliceData = new ArrayList<>();
+        String controllerClassName = "";
+
+        try {
+            if (parsedXml.mError != null) {
+                throw parsedXml.mError;
+            }
 
-            for (Bundle bundle : metadata) {
+            for (Bundle bundle : parsedXml.mMetadata) {
                 // TODO (b/67996923) Non-controller Slices should become intent-only slices.
                 // Note that without a controller, dynamic summaries are impossible.
                 controllerClassName = bundle.getString(METADATA_CONTROLLER);
@@ -220,7 +308,7 @@ class SliceDataConverter {
                         .setTitle(title)
                         .setSummary(summary)
                         .setIcon(iconResId)
-                        .setScreenTitle(screenTitle)
+                        .setScreenTitle(parsedXml.mScreenTitle)
                         .setPreferenceControllerClassName(controllerClassName)
                         .setFragmentName(fragmentName)
                         .setSliceType(sliceType)
@@ -251,8 +339,6 @@ class SliceDataConverter {
                     SettingsEnums.PAGE_UNKNOWN,
                     fragmentName + "_" + controllerClassName,
                     1);
-        } finally {
-            if (parser != null) parser.close();
         }
         return xmlSliceData;
     }
@@ -319,4 +405,65 @@ class SliceDataConverter {
                 mContext);
         return accessibilityManager.getInstalledAccessibilityServiceList();
     }
-}
\ No newline at end of file
+
+    private static class XmlSource {
+        private final String mFragmentName;
+        private final int mXmlResId;
+
+        XmlSource(String fragmentName, int xmlResId) {
+            mFragmentName = fragmentName;
+            mXmlResId = xmlResId;
+        }
+    }
+
+    private static class ParsedXml {
+        private final String mScreenTitle;
+        private final List<Bundle> mMetadata;
+        private final Exception mError;
+        private final long mElapsedMs;
+
+        ParsedXml(String screenTitle, List<Bundle> metadata, Exception error, long elapsedMs) {
+            mScreenTitle = screenTitle;
+            mMetadata = metadata;
+            mError = error;
+            mElapsedMs = elapsedMs;
+        }
+    }
+
+    /**
+     * Splits a range of xml in halves until a single one is left, and parses it.
+     */
+    private class ParseXmlAction extends RecursiveAction {
+        private final List<XmlSource> mSources;
+        private final ParsedXml[] mResults;
+        private final AtomicBoolean mCancelSignal;
+        private final int mStart;
+        private final int mEnd;
+
+        ParseXmlAction(List<XmlSource> sources, ParsedXml[] results, AtomicBoolean cancelSignal,
+                int start, int end) {
+            mSources = sources;
+            mResults = results;
+            mCancelSignal = cancelSignal;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mCancelSignal.get()) {
+                return;
+            }
+            if (mEnd - mStart > 1) {
+                final int middle = (mStart + mEnd) >>> 1;
+                invokeAll(
+                        new ParseXmlAction(mSources, mResults, mCancelSignal, mStart, middle),
+                        new ParseXmlAction(mSources, mResults, mCancelSignal, middle, mEnd));
+                return;
+            }
+            for (int i = mStart; i < mEnd; i++) {
+                mResults[i] = parseXml(mSources.get(i).mXmlResId);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.net.Uri;
+import android.util.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides when the changes of {@link SliceBackgroundWorker} results are notified to the Slice
+ * {@link Uri}s.
+ *
+ * Each {@link Uri} has its own throttle interval. It doubles, up to {@link #MAX_INTERVAL_MS}, when
+ * updates arrive faster than it or when the previous notification was not followed by a bind,
+ * i.e. the Slice is not visible or its host is slow. It halves back to {@link #MIN_INTERVAL_MS}
+ * otherwise. The {@link Uri}s due within {@link #BATCH_WINDOW_MS} are notified together.
+ *
+ * Times are {@link android.os.SystemClock#uptimeMillis()}.
+ */
+class SliceUpdateThrottler {
+
+    static final long MIN_INTERVAL_MS = 300L;
+    static final long MAX_INTERVAL_MS = 4800L;
+    static final long BATCH_WINDOW_MS = 100L;
+
+    private final ArrayMap<Uri, UriState> mUriStates = new ArrayMap<>();
+
+    /**
+     * Request a notification for the {@param uri}, merged into the pending one if any.
+     *
+     * @return the time of the next notify cycle.
+     */
+    synchronized long requestUpdate(Uri uri, long nowMs) {
+        UriState state = mUriStates.get(uri);
+        if (state == null) {
+            state = new UriState();
+            mUriStates.put(uri, state);
+        }
+        if (state.mDueTimeMs != 0L) {
+            state.mUpdateMerged = true;
+            state.mDroppedCount++;
+        } else if (state.mLastNotifyTimeMs == 0L) {
+            // Postpone the first update triggering by onSlicePinned() to avoid being too close
+            // to the first Slice bind.
+            state.mDueTimeMs = nowMs + MIN_INTERVAL_MS;
+        } else {
+            state.mDueTimeMs = Math.max(nowMs, state.mLastNotifyTimeMs + state.mIntervalMs);
+        }
+        return getNextDueTime();
+    }
+
+    /**
+     * @return the {@link Uri}s to notify in the cycle running at {@param nowMs}.
+     */
+    synchronized List<Uri> pollDueUris(long nowMs) {
+        final List<Uri> uris = new ArrayList<>();
+        for (int i = 0, size = mUriStates.size(); i < size; i++) {
+            final UriState state = mUriStates.valueAt(i);
+            if (state.mDueTimeMs == 0L || state.mDueTimeMs > nowMs + BATCH_WINDOW_MS) {
+                continue;
+            }
+            if (state.mUpdateMerged || state.mAwaitingBind) {
+                state.mIntervalMs = Math.min(state.mIntervalMs * 2, MAX_INTERVAL_MS);
+            } else {
+                state.mIntervalMs = Math.max(state.mIntervalMs / 2, MIN_INTERVAL_MS);
+            }
+            state.mLastNotifyTimeMs = nowMs;
+            state.mDueTimeMs = 0L;
+            state.mUpdateMerged = false;
+            state.mAwaitingBind = true;
+            state.mNotifyCount++;
+            uris.add(mUriStates.keyAt(i));
+        }
+        return uris;
+    }
+
+    /**
+     * @return the time of the next notify cycle, or 0 if nothing is pending.
+     */
+    synchronized long getNextDueTime() {
+        long nextDueTimeMs = 0L;
+        for (int i = 0, size = mUriStates.size(); i < size; i++) {
+            final long dueTimeMs = mUriStates.valueAt(i).mDueTimeMs;
+            if (dueTimeMs != 0L && (nextDueTimeMs == 0L || dueTimeMs < nextDueTimeMs)) {
+                nextDueTimeMs = dueTimeMs;
+            }
+        }
+        return nextDueTimeMs;
+    }
+
+    /**
+     * Called when the Slice of {@param uri} is bound, i.e. its host consumed the notification.
+     */
+    synchronized void onSliceBound(Uri uri) {
+        final UriState state = mUriStates.get(uri);
+        if (state != null) {
+            state.mAwaitingBind = false;
+        }
+    }
+
+    /**
+     * Forget the {@param uri} and drop its pending notification.
+     */
+    synchronized void remove(Uri uri) {
+        mUriStates.remove(uri);
+    }
+
+    /**
+     * @return the number of notifications sent for the {@param uri}.
+     */
+    synchronized int getNotifyCount(Uri uri) {
+        final UriState state = mUriStates.get(uri);
+        return state == null ? 0 : state.mNotifyCount;
+    }
+
+    /**
+     * @return the number of updates of the {@param uri} merged into a pending notification.
+     */
+    synchronized int getDroppedUpdateCount(Uri uri) {
+        final UriState state = mUriStates.get(uri);
+        return state == null ? 0 : state.mDroppedCount;
+    }
+
+    synchronized long getIntervalMs(Uri uri) {
+        final UriState state = mUriStates.get(uri);
+        return state == null ? MIN_INTERVAL_MS : state.mIntervalMs;
+    }
+
+    private static class UriState {
+        private long mIntervalMs = MIN_INTERVAL_MS;
+        private long mLastNotifyTimeMs;
+        private long mDueTimeMs;
+        private boolean mUpdateMerged;
+        private boolean mAwaitingBind;
+        private int mNotifyCount;
+        private int mDroppedCount;
+    }
+}
@@ -24,6 +24,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Binder;
 import android.text.TextUtils;
+import android.util.Log;
 import android.util.Pair;
 
 import androidx.slice.Slice;
@@ -36,9 +37,15 @@ import java.util.List;
 
 /**
  * Class used to map a {@link Uri} from {@link SettingsSliceProvider} to a Slice.
+ *
+ * The {@link SliceData} are served from the {@link SliceDataCache} of the
+ * {@link SlicesDatabaseHelper}, so binding a slice does not query the database once the index is
+ * read.
  */
 public class SlicesDatabaseAccessor {
 
+    private static final String TAG = "SlicesDatabaseAccessor";
+
     public static final String[] SELECT_COLUMNS_ALL = {
             IndexColumns.KEY,
             IndexColumns.TITLE,
@@ -71,9 +78,8 @@ public class SlicesDatabaseAccessor {
         if (pathData == null) {
             throw new IllegalStateException("Invalid Slices uri: " + uri);
         }
-        try (Cursor cursor = getIndexedSliceData(pathData.second /* key */)) {
-            return buildSliceData(cursor, uri, pathData.first /* isIntentOnly */);
-        }
+        return buildSliceData(getCachedSliceData(pathData.second /* key */), uri,
+                pathData.first /* isIntentOnly */);
     }
 
     /**
@@ -82,9 +88,7 @@ public class SlicesDatabaseAccessor {
      * Used when handling the action of the {@link Slice}.
      */
     public SliceData getSliceDataFromKey(String key) {
-        try (Cursor cursor = getIndexedSliceData(key)) {
-            return buildSliceData(cursor, null /* uri */, false /* isIntentOnly */);
-        }
+        return getCachedSliceData(key);
     }
 
     /**
@@ -115,9 +119,51 @@ public class SlicesDatabaseAccessor {
         return uris;
     }
 
-    private Cursor getIndexedSliceData(String path) {
+    /**
+     * @return the {@link SliceData} of the {@param key} without {@link Uri}, from the cache of
+     * {@link SlicesDatabaseHelper}, which is warmed up with one read of the whole index.
+     */
+    private SliceData getCachedSliceData(String key) {
         verifyIndexing();
 
+        final SliceDataCache cache = mHelper.getSliceDataCache();
+        SliceData sliceData = cache.get(key);
+        if (sliceData == null && !cache.isWarmedUp()) {
+            warmUpCache(cache);
+            sliceData = cache.get(key);
+        }
+        if (sliceData == null) {
+            // Evicted, or not valid which throws below.
+            final int generation = cache.getGeneration();
+            try (Cursor cursor = getIndexedSliceData(key)) {
+                sliceData = buildSliceData(cursor, null /* uri */, false /* isIntentOnly */);
+            }
+            cache.put(sliceData, generation);
+        }
+        return sliceData;
+    }
+
+    private void warmUpCache(SliceDataCache cache) {
+        final int generation = cache.getGeneration();
+        final List<SliceData> sliceDataList = new ArrayList<>();
+        final SQLiteDatabase database = mHelper.getReadableDatabase();
+        try (Cursor cursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
+                null /* where */, null /* selection */, null /* groupBy */, null /* having */,
+                null /* orderBy */, String.valueOf(SliceDataCache.MAX_SIZE) /* limit */)) {
+            while (cursor.moveToNext()) {
+                try {
+                    sliceDataList.add(
+                            buildSliceData(cursor, null /* uri */, false /* isIntentOnly */));
+                } catch (SliceData.InvalidSliceDataException e) {
+                    // Left out, so that reading it by key reports the error.
+                    Log.w(TAG, "Invalid slice data in index", e);
+                }
+            }
+        }
+        cache.putAll(sliceDataList, generation);
+    }
+
+    private Cursor getIndexedSliceData(String path) {
         final String whereClause = buildKeyMatchWhereClause();
         final SQLiteDatabase database = mHelper.getReadableDatabase();
         final String[] selection = new String[]{path};
@@ -147,6 +193,23 @@ public class SlicesDatabaseAccessor {
                 .toString();
     }
 
+    private static SliceData buildSliceData(SliceData sliceData, Uri uri,
+            boolean isIntentOnly) {
+        return new SliceData.Builder()
+                .setKey(sliceData.getKey())
+                .setTitle(sliceData.getTitle())
+                .setSummary(sliceData.getSummary())
+                .setScreenTitle(sliceData.getScreenTitle())
+                .setKeywords(sliceData.getKeywords())
+                .setIcon(sliceData.getIconResource())
+                .setFragmentName(sliceData.getFragmentClassName())
+                .setPreferenceControllerClassName(sliceData.getPreferenceController())
+                .setUri(uri)
+                .setSliceType(isIntentOnly ? SliceData.SliceType.INTENT : sliceData.getSliceType())
+                .setUnavailableSliceSubtitle(sliceData.getUnavailableSliceSubtitle())
+                .build();
+    }
+
     private static SliceData buildSliceData(Cursor cursor, Uri uri, boolean isIntentOnly) {
         final String key = cursor.getString(cursor.getColumnIndex(IndexColumns.KEY));
         final String title = cursor.getString(cursor.getColumnIndex(IndexColumns.TITLE));
@@ -36,10 +36,11 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 8;
+    private static final int DATABASE_VERSION = 9;
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
+        String TABLE_FRAGMENT_HASHES = "slices_fragment_hashes";
     }
 
     public interface IndexColumns {
@@ -105,6 +106,18 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
         String PUBLIC_SLICE = "public_slice";
     }
 
+    public interface FragmentHashColumns {
+        /**
+         * Primary key of the table. Classname of the fragment hosting the indexed slices.
+         */
+        String FRAGMENT = "fragment";
+
+        /**
+         * Digest of all {@link SliceData} indexed for the fragment.
+         */
+        String HASH = "hash";
+    }
+
     private static final String CREATE_SLICES_TABLE =
             "CREATE VIRTUAL TABLE " + Tables.TABLE_SLICES_INDEX + " USING fts4" +
                     "(" +
@@ -137,7 +150,17 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     +
                     ");";
 
+    private static final String CREATE_FRAGMENT_HASHES_TABLE =
+            "CREATE TABLE " + Tables.TABLE_FRAGMENT_HASHES +
+                    "(" +
+                    FragmentHashColumns.FRAGMENT +
+                    " TEXT PRIMARY KEY, " +
+                    FragmentHashColumns.HASH +
+                    " TEXT" +
+                    ");";
+
     private final Context mContext;
+    private final SliceDataCache mSliceDataCache = new SliceDataCache();
 
     private static SlicesDatabaseHelper sSingleton;
 
@@ -172,12 +195,21 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * {@link#isNewIndexingState(Context)} will return {@code true}.
      */
     void reconstruct(SQLiteDatabase db) {
+        clearIndexedState();
+        dropTables(db);
+        createDatabases(db);
+    }
+
+    /**
+     * Un-marks the state of the data without dropping the stored rows, so that the next index
+     * can update them incrementally.
+     */
+    void clearIndexedState() {
         mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
                 .edit()
                 .clear()
                 .apply();
-        dropTables(db);
-        createDatabases(db);
+        mSliceDataCache.invalidate();
     }
 
     /**
@@ -187,6 +219,14 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     public void setIndexedState() {
         setBuildIndexed();
         setLocaleIndexed();
+        mSliceDataCache.invalidate();
+    }
+
+    /**
+     * @return the cache of the indexed {@link SliceData}, which follows the state of the index.
+     */
+    SliceDataCache getSliceDataCache() {
+        return mSliceDataCache;
     }
 
     /**
@@ -200,11 +240,13 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private void createDatabases(SQLiteDatabase db) {
         db.execSQL(CREATE_SLICES_TABLE);
+        db.execSQL(CREATE_FRAGMENT_HASHES_TABLE);
         Log.d(TAG, "Created databases");
     }
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_FRAGMENT_HASHES);
     }
 
     private void setBuildIndexed() {
@@ -16,9 +16,11 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -26,19 +28,62 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SlicesDatabaseHelper.FragmentHashColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
  * indexable data {@link SliceData} to be stored for Slices.
+ *
+ * The index is updated incrementally: a digest of the {@link SliceData} of each fragment is
+ * stored next to the index, and only the rows of fragments whose digest changed are rewritten.
  */
 class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    private static final String INSERT_SLICE_SQL =
+            "INSERT INTO " + Tables.TABLE_SLICES_INDEX + " ("
+                    + IndexColumns.KEY + ", "
+                    + IndexColumns.SLICE_URI + ", "
+                    + IndexColumns.TITLE + ", "
+                    + IndexColumns.SUMMARY + ", "
+                    + IndexColumns.SCREENTITLE + ", "
+                    + IndexColumns.KEYWORDS + ", "
+                    + IndexColumns.ICON_RESOURCE + ", "
+                    + IndexColumns.FRAGMENT + ", "
+                    + IndexColumns.CONTROLLER + ", "
+                    + IndexColumns.SLICE_TYPE + ", "
+                    + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+                    + IndexColumns.PUBLIC_SLICE
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_FRAGMENT_SLICES_SQL =
+            "DELETE FROM " + Tables.TABLE_SLICES_INDEX
+                    + " WHERE " + IndexColumns.FRAGMENT + " = ?";
+
+    private static final String REPLACE_FRAGMENT_HASH_SQL =
+            "INSERT OR REPLACE INTO " + Tables.TABLE_FRAGMENT_HASHES + " ("
+                    + FragmentHashColumns.FRAGMENT + ", "
+                    + FragmentHashColumns.HASH
+                    + ") VALUES (?, ?)";
+
+    private static final String DELETE_FRAGMENT_HASH_SQL =
+            "DELETE FROM " + Tables.TABLE_FRAGMENT_HASHES
+                    + " WHERE " + FragmentHashColumns.FRAGMENT + " = ?";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,7 +103,7 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database. Only fragments whose data changed since the last index are rewritten.
      */
     protected void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
@@ -71,18 +116,28 @@ class SlicesIndexer implements Runnable {
         long startTime = System.currentTimeMillis();
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
+            // Drop the stale build and locale markers but keep the rows for the diff.
+            mHelper.clearIndexedState();
+            final Map<String, List<SliceData>> indexData;
+            try {
+                indexData = groupByFragment(getSliceData());
+            } catch (CancellationException e) {
+                // Leave the index as it was, it will be updated on the next request.
+                Log.d(TAG, "Indexing slices cancelled");
+                return;
+            }
+            final int updatedCount = updateSliceData(database, indexData);
 
             mHelper.setIndexedState();
 
             // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
+            Log.d(TAG, "Indexing slices database took: " + (System.currentTimeMillis() - startTime)
+                    + ", updated " + updatedCount + " of " + indexData.size() + " fragments");
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
+            // Drop what readers cached from the index while the transaction was open.
+            mHelper.getSliceDataCache().invalidate();
         }
     }
 
@@ -94,31 +149,154 @@ class SlicesIndexer implements Runnable {
                 .getSliceData();
     }
 
+    /**
+     * Rewrites the rows of every fragment whose digest differs from the stored one, and removes
+     * the rows of fragments which no longer provide any slice.
+     *
+     * @return the number of fragments rewritten.
+     */
+    @VisibleForTesting
+    int updateSliceData(SQLiteDatabase database, Map<String, List<SliceData>> indexData) {
+        final Map<String, String> storedHashes = getStoredFragmentHashes(database);
+        final SQLiteStatement deleteSlices = database.compileStatement(DELETE_FRAGMENT_SLICES_SQL);
+        final SQLiteStatement deleteHash = database.compileStatement(DELETE_FRAGMENT_HASH_SQL);
+        final SQLiteStatement replaceHash = database.compileStatement(REPLACE_FRAGMENT_HASH_SQL);
+        int updatedCount = 0;
+        try {
+            for (String fragment : storedHashes.keySet()) {
+                if (!indexData.containsKey(fragment)) {
+                    deleteFragment(deleteSlices, fragment);
+                    deleteFragment(deleteHash, fragment);
+                }
+            }
+
+            for (Map.Entry<String, List<SliceData>> entry : indexData.entrySet()) {
+                final String fragment = entry.getKey();
+                final String hash = computeHash(entry.getValue());
+                if (hash != null && hash.equals(storedHashes.get(fragment))) {
+                    continue;
+                }
+                deleteFragment(deleteSlices, fragment);
+                insertSliceData(database, entry.getValue());
+                if (hash == null) {
+                    deleteFragment(deleteHash, fragment);
+                } else {
+                    replaceHash.bindString(1, fragment);
+                    replaceHash.bindString(2, hash);
+                    replaceHash.executeInsert();
+                    replaceHash.clearBindings();
+                }
+                updatedCount++;
+            }
+        } finally {
+            deleteSlices.close();
+            deleteHash.close();
+            replaceHash.close();
+        }
+        return updatedCount;
+    }
+
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
-
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toSafeString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+        final SQLiteStatement statement = database.compileStatement(INSERT_SLICE_SQL);
+        try {
+            for (SliceData dataRow : indexData) {
+                bindStringOrNull(statement, 1, dataRow.getKey());
+                bindStringOrNull(statement, 2, dataRow.getUri().toSafeString());
+                bindStringOrNull(statement, 3, dataRow.getTitle());
+                bindStringOrNull(statement, 4, dataRow.getSummary());
+                final CharSequence screenTitle = dataRow.getScreenTitle();
+                bindStringOrNull(statement, 5, screenTitle != null ? screenTitle.toString() : null);
+                bindStringOrNull(statement, 6, dataRow.getKeywords());
+                statement.bindLong(7, dataRow.getIconResource());
+                bindStringOrNull(statement, 8, dataRow.getFragmentClassName());
+                bindStringOrNull(statement, 9, dataRow.getPreferenceController());
+                statement.bindLong(10, dataRow.getSliceType());
+                bindStringOrNull(statement, 11, dataRow.getUnavailableSliceSubtitle());
+                statement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+
+                statement.executeInsert();
+                statement.clearBindings();
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private Map<String, List<SliceData>> groupByFragment(List<SliceData> sliceData) {
+        final Map<String, List<SliceData>> result = new LinkedHashMap<>();
+        for (SliceData data : sliceData) {
+            List<SliceData> fragmentData = result.get(data.getFragmentClassName());
+            if (fragmentData == null) {
+                fragmentData = new ArrayList<>();
+                result.put(data.getFragmentClassName(), fragmentData);
+            }
+            fragmentData.add(data);
+        }
+        return result;
+    }
+
+    private Map<String, String> getStoredFragmentHashes(SQLiteDatabase database) {
+        final Map<String, String> hashes = new ArrayMap<>();
+        try (Cursor cursor = database.query(Tables.TABLE_FRAGMENT_HASHES,
+                new String[]{FragmentHashColumns.FRAGMENT, FragmentHashColumns.HASH},
+                null /* selection */, null /* selectionArgs */, null /* groupBy */,
+                null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                hashes.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * @return a digest of every indexed field of the given data, or {@code null} if the digest
+     * cannot be computed, in which case the fragment is always rewritten.
+     */
+    @VisibleForTesting
+    static String computeHash(List<SliceData> sliceData) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            Log.w(TAG, "Cannot compute slice data hash", e);
+            return null;
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (SliceData data : sliceData) {
+            builder.setLength(0);
+            builder.append(data.getKey()).append('\0')
+                    .append(data.getUri()).append('\0')
+                    .append(data.getTitle()).append('\0')
+                    .append(data.getSummary()).append('\0')
+                    .append(data.getScreenTitle()).append('\0')
+                    .append(data.getKeywords()).append('\0')
+                    .append(data.getIconResource()).append('\0')
+                    .append(data.getFragmentClassName()).append('\0')
+                    .append(data.getPreferenceController()).append('\0')
+                    .append(data.getSliceType()).append('\0')
+                    .append(data.getUnavailableSliceSubtitle()).append('\0')
+                    .append(data.isPublicSlice()).append('\n');
+            digest.update(builder.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void deleteFragment(SQLiteStatement statement, String fragment) {
+        statement.bindString(1, fragment);
+        statement.executeUpdateDelete();
+        statement.clearBindings();
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Samples of one benchmark metric, in milliseconds, and their statistical summary.
+ */
+class BenchmarkStats {
+    private final String mName;
+    private final List<Long> mSamples = new ArrayList<>();
+
+    BenchmarkStats(String name) {
+        mName = name;
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    void addSample(long valueMs) {
+        mSamples.add(valueMs);
+    }
+
+    int getCount() {
+        return mSamples.size();
+    }
+
+    long getMin() {
+        return mSamples.isEmpty() ? 0 : Collections.min(mSamples);
+    }
+
+    long getMax() {
+        return mSamples.isEmpty() ? 0 : Collections.max(mSamples);
+    }
+
+    double getMean() {
+        return mSamples.stream().mapToLong(l -> l).average().orElse(0);
+    }
+
+    double getStandardDeviation() {
+        if (mSamples.size() < 2) {
+            return 0;
+        }
+        final double mean = getMean();
+        double sum = 0;
+        for (long sample : mSamples) {
+            sum += (sample - mean) * (sample - mean);
+        }
+        return Math.sqrt(sum / (mSamples.size() - 1));
+    }
+
+    /**
+     * @return the given percentile of the samples, using the nearest-rank method.
+     */
+    long getPercentile(int percentile) {
+        if (mSamples.isEmpty()) {
+            return 0;
+        }
+        final List<Long> sorted = new ArrayList<>(mSamples);
+        Collections.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    JSONObject toJson() throws JSONException {
+        final JSONObject json = new JSONObject();
+        json.put("count", getCount());
+        json.put("min", getMin());
+        json.put("max", getMax());
+        json.put("mean", getMean());
+        json.put("median", getPercentile(50));
+        json.put("p90", getPercentile(90));
+        json.put("stddev", getStandardDeviation());
+        final JSONArray samples = new JSONArray();
+        for (long sample : mSamples) {
+            samples.put(sample);
+        }
+        json.put("samples", samples);
+        return json;
+    }
+}
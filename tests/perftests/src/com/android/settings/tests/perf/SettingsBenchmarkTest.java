@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static junit.framework.TestCase.fail;
+
+import android.app.Instrumentation;
+import android.app.slice.Slice;
+import android.app.slice.SliceManager;
+import android.app.slice.SliceSpec;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.provider.SearchIndexablesContract;
+import android.support.test.uiautomator.UiDevice;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks the startup paths of Settings: cold and warm launch, time to fully drawn of
+ * dashboard pages, homepage contextual card loading, search indexing and slice binding.
+ *
+ * Every metric is sampled {@link #DEFAULT_ITERATIONS} times, or as many times as the
+ * "iterations" instrumentation argument says. The summary of each metric is reported in the
+ * instrumentation results, and all samples are written as json to
+ * {@link #RESULT_FILE_NAME} in the external files directory of this package.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettingsBenchmarkTest {
+    private static final String TAG = "SettingsBenchmarkTest";
+    private static final String SETTINGS_PACKAGE = "com.android.settings";
+    private static final String RESULT_FILE_NAME = "settings_benchmark.json";
+    private static final String ARG_ITERATIONS = "iterations";
+    private static final int DEFAULT_ITERATIONS = 10;
+    private static final int TIME_OUT = 5000;
+    private static final int SETTLE_TIME = 1000;
+
+    private static final String LOGCAT_COMMAND =
+            "logcat -d -s ActivityTaskManager:I ActivityManager:I ContextualCardManager:D";
+    private static final Pattern TOTAL_TIME_PATTERN = Pattern.compile("TotalTime:\\s(\\d+)");
+    private static final Pattern FULLY_DRAWN_PATTERN =
+            Pattern.compile("Fully drawn " + SETTINGS_PACKAGE + "/\\S+: \\+(?:(\\d+)s)?(\\d+)ms");
+    private static final Pattern CARD_LOADING_PATTERN =
+            Pattern.compile("ContextualCardManager: Total loading time = (\\d+)");
+
+    private static final String HOMEPAGE_ACTION = "android.settings.SETTINGS";
+    private static final String[] DASHBOARD_ACTIONS = {
+            "android.settings.DISPLAY_SETTINGS",
+            "android.settings.SOUND_SETTINGS",
+            "android.settings.INTERNAL_STORAGE_SETTINGS",
+            "android.intent.action.POWER_USAGE_SUMMARY",
+    };
+    private static final String[] SEARCH_INDEXABLES_PATHS = {
+            SearchIndexablesContract.INDEXABLES_XML_RES_PATH,
+            SearchIndexablesContract.INDEXABLES_RAW_PATH,
+            SearchIndexablesContract.NON_INDEXABLES_KEYS_PATH,
+    };
+    private static final Uri[] SLICE_URIS = {
+            Uri.parse("content://android.settings.slices/action/wifi"),
+            Uri.parse("content://android.settings.slices/action/bluetooth"),
+            Uri.parse("content://android.settings.slices/action/location"),
+            Uri.parse("content://com.android.settings.slices/action/flashlight"),
+    };
+
+    // Shared by all tests of the run, reported once they are all done.
+    private static final Map<String, BenchmarkStats> sResults = new LinkedHashMap<>();
+
+    private Context mContext;
+    private UiDevice mDevice;
+    private int mIterations;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = getInstrumentation().getContext();
+        mDevice = UiDevice.getInstance(getInstrumentation());
+        final String iterations = InstrumentationRegistry.getArguments().getString(ARG_ITERATIONS);
+        mIterations = iterations == null ? DEFAULT_ITERATIONS : Integer.parseInt(iterations);
+        mDevice.pressHome();
+        mDevice.waitForIdle(TIME_OUT);
+    }
+
+    @AfterClass
+    public static void reportResults() throws Exception {
+        final Bundle bundle = new Bundle();
+        final JSONObject metrics = new JSONObject();
+        for (BenchmarkStats stats : sResults.values()) {
+            metrics.put(stats.getName(), stats.toJson());
+            putStatsToBundle(bundle, stats);
+        }
+        final JSONObject report = new JSONObject();
+        report.put("fingerprint", Build.FINGERPRINT);
+        report.put("timestamp", System.currentTimeMillis());
+        report.put("metrics", metrics);
+
+        final File file = writeReport(report);
+        if (file != null) {
+            bundle.putString("SettingsBenchmark_result_file", file.getAbsolutePath());
+        }
+        getInstrumentation().sendStatus(0, bundle);
+        sResults.clear();
+    }
+
+    @Test
+    public void coldLaunch() throws Exception {
+        for (int i = 0; i < mIterations; i++) {
+            forceStopSettings();
+            addSample("cold_launch", launch(HOMEPAGE_ACTION));
+            goHome();
+        }
+    }
+
+    @Test
+    public void warmLaunch() throws Exception {
+        launch(HOMEPAGE_ACTION);
+        goHome();
+        for (int i = 0; i < mIterations; i++) {
+            addSample("warm_launch", launch(HOMEPAGE_ACTION));
+            goHome();
+        }
+        forceStopSettings();
+    }
+
+    @Test
+    public void dashboardFullyDrawn() throws Exception {
+        for (int i = 0; i < mIterations; i++) {
+            for (String action : DASHBOARD_ACTIONS) {
+                forceStopSettings();
+                clearLogcat();
+                launch(action);
+                addSample("fully_drawn_" + getActionName(action),
+                        waitForLogcat(FULLY_DRAWN_PATTERN));
+                goHome();
+            }
+        }
+    }
+
+    @Test
+    public void homepageCardLoading() throws Exception {
+        for (int i = 0; i < mIterations; i++) {
+            forceStopSettings();
+            clearLogcat();
+            launch(HOMEPAGE_ACTION);
+            final long loadingTime = waitForLogcat(CARD_LOADING_PATTERN);
+            if (loadingTime < 0) {
+                // Contextual cards are disabled in legacy suggestion mode, nothing to measure.
+                Log.w(TAG, "No contextual card loading reported, skipping");
+                goHome();
+                return;
+            }
+            addSample("homepage_card_loading", loadingTime);
+            goHome();
+        }
+    }
+
+    @Test
+    public void searchIndexing() throws Exception {
+        for (int i = 0; i < mIterations; i++) {
+            forceStopSettings();
+            // The first query also pays for starting the Settings process.
+            addSample("search_indexing_cold", queryAllIndexables());
+            addSample("search_indexing_warm", queryAllIndexables());
+        }
+    }
+
+    @Test
+    public void sliceBind() throws Exception {
+        final SliceManager sliceManager = mContext.getSystemService(SliceManager.class);
+        for (Uri uri : SLICE_URIS) {
+            sliceManager.grantPermissionFromUser(uri, mContext.getPackageName(),
+                    true /* allSlices */);
+        }
+        for (int i = 0; i < mIterations; i++) {
+            forceStopSettings();
+            for (Uri uri : SLICE_URIS) {
+                final long startTime = SystemClock.elapsedRealtime();
+                final Slice slice = sliceManager.bindSlice(uri, Collections.singleton(
+                        new SliceSpec("androidx.slice.LIST", 1)));
+                final long bindTime = SystemClock.elapsedRealtime() - startTime;
+                if (slice == null) {
+                    Log.w(TAG, "Cannot bind slice " + uri);
+                    continue;
+                }
+                addSample("slice_bind_" + uri.getLastPathSegment(), bindTime);
+            }
+        }
+    }
+
+    private long launch(String action) throws Exception {
+        final String result = mDevice.executeShellCommand("am start -W -a " + action);
+        final Matcher matcher = TOTAL_TIME_PATTERN.matcher(result);
+        if (!matcher.find()) {
+            fail("Cannot launch " + action + ": " + result);
+        }
+        mDevice.waitForIdle(TIME_OUT);
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private long queryAllIndexables() {
+        final long startTime = SystemClock.elapsedRealtime();
+        for (String path : SEARCH_INDEXABLES_PATHS) {
+            final Uri uri = new Uri.Builder()
+                    .scheme("content")
+                    .authority(SETTINGS_PACKAGE)
+                    .path(path)
+                    .build();
+            try (Cursor cursor = mContext.getContentResolver().query(uri,
+                    null /* projection */, null /* selection */, null /* selectionArgs */,
+                    null /* sortOrder */)) {
+                if (cursor == null) {
+                    fail("Cannot query " + uri);
+                }
+                // Makes sure the whole result is computed and sent over.
+                cursor.moveToPosition(cursor.getCount() - 1);
+            }
+        }
+        return SystemClock.elapsedRealtime() - startTime;
+    }
+
+    /**
+     * @return the time reported by the first logcat line matching the pattern, or -1 if no such
+     * line shows up before the timeout.
+     */
+    private long waitForLogcat(Pattern pattern) throws Exception {
+        final long deadline = SystemClock.elapsedRealtime() + TIME_OUT;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            final Matcher matcher = pattern.matcher(mDevice.executeShellCommand(LOGCAT_COMMAND));
+            if (matcher.find()) {
+                long timeMs = 0;
+                for (int group = matcher.groupCount(); group > 0; group--) {
+                    // Groups are ordered from the largest unit, the last one being milliseconds.
+                    if (matcher.group(group) != null) {
+                        timeMs += Long.parseLong(matcher.group(group))
+                                * (group == matcher.groupCount() ? 1 : 1000);
+                    }
+                }
+                return timeMs;
+            }
+            Thread.sleep(SETTLE_TIME / 4);
+        }
+        return -1;
+    }
+
+    private void clearLogcat() throws IOException {
+        mDevice.executeShellCommand("logcat -c");
+    }
+
+    private void goHome() {
+        mDevice.pressHome();
+        mDevice.waitForIdle(TIME_OUT);
+    }
+
+    private void forceStopSettings() throws Exception {
+        mDevice.executeShellCommand("am force-stop " + SETTINGS_PACKAGE);
+        Thread.sleep(SETTLE_TIME);
+    }
+
+    private void addSample(String metric, long valueMs) {
+        if (valueMs < 0) {
+            fail("No value reported for " + metric);
+        }
+        BenchmarkStats stats = sResults.get(metric);
+        if (stats == null) {
+            stats = new BenchmarkStats(metric);
+            sResults.put(metric, stats);
+        }
+        stats.addSample(valueMs);
+    }
+
+    private static String getActionName(String action) {
+        return action.substring(action.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+    private static void putStatsToBundle(Bundle bundle, BenchmarkStats stats) {
+        final String prefix = "SettingsBenchmark_" + stats.getName() + "_";
+        bundle.putString(prefix + "min", String.valueOf(stats.getMin()));
+        bundle.putString(prefix + "max", String.valueOf(stats.getMax()));
+        bundle.putString(prefix + "avg", String.valueOf((long) stats.getMean()));
+        bundle.putString(prefix + "median", String.valueOf(stats.getPercentile(50)));
+        bundle.putString(prefix + "p90", String.valueOf(stats.getPercentile(90)));
+        bundle.putString(prefix + "stddev", String.format("%.1f",
+                stats.getStandardDeviation()));
+    }
+
+    private static File writeReport(JSONObject report) throws JSONException {
+        final Instrumentation instrumentation = getInstrumentation();
+        File dir = instrumentation.getContext().getExternalFilesDir(null);
+        if (dir == null) {
+            dir = instrumentation.getContext().getFilesDir();
+        }
+        final File file = new File(dir, RESULT_FILE_NAME);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(report.toString(2).getBytes(StandardCharsets.UTF_8));
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write benchmark results", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppIconLoaderTest {
+
+    private static final int MAX_ICON_BYTES = 1024 * 1024;
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private final Drawable mIcon = mock(Drawable.class);
+    private AppIconLoader mLoader;
+    private ApplicationInfo mFirstApp;
+    private ApplicationInfo mSecondApp;
+
+    @Before
+    public void setUp() {
+        mLoader = spy(new AppIconLoader(RuntimeEnvironment.application, mTasks::add,
+                MAX_ICON_BYTES));
+        mFirstApp = createApp("com.android.first");
+        mSecondApp = createApp("com.android.second");
+        doReturn(mIcon).when(mLoader).loadIcon(any(ApplicationInfo.class));
+        // Without constant state, each caller gets the mutated icon.
+        doReturn(mIcon).when(mIcon).mutate();
+    }
+
+    @Test
+    public void requestIcon_sameAppTwice_loadedOnce() {
+        final AppIconLoader.Callback firstCallback = mock(AppIconLoader.Callback.class);
+        final AppIconLoader.Callback secondCallback = mock(AppIconLoader.Callback.class);
+
+        mLoader.requestIcon(mFirstApp, firstCallback);
+        mLoader.requestIcon(mFirstApp, secondCallback);
+        runTasks();
+
+        assertThat(mTasks).isEmpty();
+        verify(mLoader, times(1)).loadIcon(mFirstApp);
+        verify(firstCallback).onIconLoaded(mFirstApp, mIcon);
+        verify(secondCallback).onIconLoaded(mFirstApp, mIcon);
+    }
+
+    @Test
+    public void requestIcon_lastRequestLoadedFirst() {
+        mLoader.requestIcon(mFirstApp, mock(AppIconLoader.Callback.class));
+        mLoader.requestIcon(mSecondApp, mock(AppIconLoader.Callback.class));
+        runTasks();
+
+        final InOrder inOrder = inOrder(mLoader);
+        inOrder.verify(mLoader).loadIcon(mSecondApp);
+        inOrder.verify(mLoader).loadIcon(mFirstApp);
+    }
+
+    @Test
+    public void cancelRequest_iconNotLoaded() {
+        final AppIconLoader.Callback callback = mock(AppIconLoader.Callback.class);
+
+        mLoader.requestIcon(mFirstApp, callback);
+        mLoader.cancelRequest(callback);
+        runTasks();
+
+        verify(mLoader, never()).loadIcon(mFirstApp);
+        verify(callback, never()).onIconLoaded(any(), any());
+    }
+
+    @Test
+    public void loadUnbadgedIcon_appOfThisUser_sharesBadgedIcon() {
+        assertThat(mLoader.loadUnbadgedIcon(mFirstApp)).isEqualTo(mIcon);
+    }
+
+    @Test
+    public void newInstance_bitmapDrawable_returnNewDrawableSharingBitmap() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        final BitmapDrawable icon = new BitmapDrawable(null, bitmap);
+
+        final Drawable newIcon = AppIconLoader.newInstance(icon);
+
+        assertThat(newIcon).isNotSameAs(icon);
+        assertThat(((BitmapDrawable) newIcon).getBitmap()).isSameAs(bitmap);
+    }
+
+    @Test
+    public void getByteCount_bitmapDrawable_bitmapBytes() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+
+        assertThat(AppIconLoader.getByteCount(new BitmapDrawable(null, bitmap)))
+                .isEqualTo(bitmap.getAllocationByteCount());
+    }
+
+    private void runTasks() {
+        while (!mTasks.isEmpty()) {
+            mTasks.remove(0).run();
+        }
+    }
+
+    private static ApplicationInfo createApp(String packageName) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        return info;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.Looper;
+
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateBaseBridgeTest {
+
+    @Mock
+    private ApplicationsState mAppState;
+    @Mock
+    private ApplicationsState.Session mSession;
+    @Mock
+    private AppStateBaseBridge.Callback mCallback;
+    private TestBridge mBridge;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mAppState.newSession(any())).thenReturn(mSession);
+        when(mAppState.getBackgroundLooper()).thenReturn(Looper.getMainLooper());
+        when(mSession.getAllApps()).thenReturn(new ArrayList<>());
+        mBridge = new TestBridge(mAppState, mCallback);
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void burstOfChanges_loadOnce() {
+        mBridge.resume();
+        mBridge.onLoadEntriesCompleted();
+        mBridge.onPackageListChanged();
+        mBridge.onPackageListChanged();
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+        verify(mCallback, times(1)).onExtraInfoUpdated();
+    }
+
+    @Test
+    public void forceUpdate_loadAllPending_notLoadedSeparately() {
+        mBridge.onPackageListChanged();
+        mBridge.forceUpdate("com.android.test", 1000);
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+        assertThat(mBridge.mUpdateCount).isEqualTo(0);
+    }
+
+    @Test
+    public void forceUpdateThenPackageListChanged_notifyOnce() {
+        mBridge.forceUpdate("com.android.test", 1000);
+        mBridge.onPackageListChanged();
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+        verify(mCallback, times(1)).onExtraInfoUpdated();
+    }
+
+    private static class TestBridge extends AppStateBaseBridge {
+        private int mLoadAllCount;
+        private int mUpdateCount;
+
+        TestBridge(ApplicationsState appState, Callback callback) {
+            super(appState, callback);
+        }
+
+        @Override
+        protected void loadAllExtraInfo() {
+            mLoadAllCount++;
+        }
+
+        @Override
+        protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
+            mUpdateCount++;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageEvents.Event;
+import android.os.Parcel;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationsSentHistoryTest {
+
+    private static final String PKG = "pkg1";
+    private static final String CALLING_PKG = "com.android.settings";
+    private static final int USER_ID = 0;
+    private static final long NOW = 100 * DAY_IN_MILLIS;
+
+    @Mock
+    private IUsageStatsManager mUsageStats;
+    private File mFile;
+    private NotificationsSentHistory mHistory;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mFile = new File(RuntimeEnvironment.application.getFilesDir(), "notifications_sent_test");
+        mHistory = new NotificationsSentHistory(mFile, USER_ID);
+    }
+
+    @Test
+    public void update_twice_onlyQueriesNewEvents() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(NOW - DAY_IN_MILLIS, NOW - 1));
+        mHistory.update(mUsageStats, CALLING_PKG, NOW);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(NOW + 10));
+        final long later = NOW + NotificationsSentHistory.MIN_UPDATE_INTERVAL_MS;
+        mHistory.update(mUsageStats, CALLING_PKG, later);
+
+        verify(mUsageStats).queryEventsForUser(NOW - 7 * DAY_IN_MILLIS, NOW, USER_ID,
+                CALLING_PKG);
+        verify(mUsageStats).queryEventsForUser(NOW, later, USER_ID, CALLING_PKG);
+        final NotificationsSentState state = mHistory.getState(PKG);
+        assertThat(state.sentCount).isEqualTo(3);
+        assertThat(state.lastSent).isEqualTo(NOW + 10);
+    }
+
+    @Test
+    public void update_calledAgainRightAway_notQueried() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(NOW - 1));
+        mHistory.update(mUsageStats, CALLING_PKG, NOW);
+
+        mHistory.update(mUsageStats, CALLING_PKG, NOW + 100);
+
+        verify(mUsageStats, times(1))
+                .queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString());
+        assertThat(mHistory.getState(PKG).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void update_nothingChanged_fileNotWritten() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(NOW - 1));
+        mHistory.update(mUsageStats, CALLING_PKG, NOW);
+        assertThat(mFile.exists()).isTrue();
+        mFile.delete();
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+
+        mHistory.update(mUsageStats, CALLING_PKG,
+                NOW + NotificationsSentHistory.MIN_UPDATE_INTERVAL_MS);
+
+        assertThat(mFile.exists()).isFalse();
+    }
+
+    @Test
+    public void update_eventsOutOfWindow_dropped() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(NOW - 6 * DAY_IN_MILLIS, NOW - 1));
+        mHistory.update(mUsageStats, CALLING_PKG, NOW);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+
+        mHistory.update(mUsageStats, CALLING_PKG, NOW + DAY_IN_MILLIS / 2);
+        assertThat(mHistory.getState(PKG).sentCount).isEqualTo(1);
+
+        mHistory.update(mUsageStats, CALLING_PKG,
+                NOW + DAY_IN_MILLIS + NotificationsSentHistory.BUCKET_MILLIS);
+        assertThat(mHistory.getState(PKG)).isNull();
+    }
+
+    @Test
+    public void update_newInstance_readsPersistedCounts() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(NOW - 1));
+        mHistory.update(mUsageStats, CALLING_PKG, NOW);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+
+        final NotificationsSentHistory history = new NotificationsSentHistory(mFile, USER_ID);
+        history.update(mUsageStats, CALLING_PKG, NOW + 100);
+
+        verify(mUsageStats).queryEventsForUser(eq(NOW), eq(NOW + 100L), anyInt(), anyString());
+        assertThat(history.getState(PKG).sentCount).isEqualTo(1);
+        assertThat(history.getState(PKG).lastSent).isEqualTo(NOW - 1);
+    }
+
+    private static UsageEvents getUsageEvents(long... timestamps) {
+        final List<Event> events = new ArrayList<>();
+        for (long timestamp : timestamps) {
+            final Event event = new Event();
+            event.mEventType = Event.NOTIFICATION_INTERRUPTION;
+            event.mPackage = PKG;
+            event.mTimeStamp = timestamp;
+            events.add(event);
+        }
+        final UsageEvents usageEvents = new UsageEvents(events, new String[] {PKG});
+        final Parcel parcel = Parcel.obtain();
+        parcel.setDataPosition(0);
+        usageEvents.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        return UsageEvents.CREATOR.createFromParcel(parcel);
+    }
+}
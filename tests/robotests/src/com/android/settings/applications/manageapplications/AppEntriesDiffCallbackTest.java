@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.ApplicationInfo;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppEntriesDiffCallbackTest {
+
+    private List<AppEntry> mOldEntries;
+    private List<AppEntry> mNewEntries;
+    private int[] mOldSignatures;
+
+    @Before
+    public void setUp() {
+        final AppEntry first = createAppEntry(1, "Apricot");
+        final AppEntry second = createAppEntry(2, "Banana");
+        mOldEntries = new ArrayList<>();
+        mOldEntries.add(first);
+        mNewEntries = new ArrayList<>();
+        mNewEntries.add(second);
+        mNewEntries.add(first);
+        mOldSignatures = AppEntriesDiffCallback.getSignatures(mOldEntries);
+    }
+
+    @Test
+    public void areItemsTheSame_sameId_returnTrue() {
+        final AppEntriesDiffCallback callback = createCallback();
+
+        assertThat(callback.areItemsTheSame(0, 1)).isTrue();
+        assertThat(callback.areItemsTheSame(0, 0)).isFalse();
+    }
+
+    @Test
+    public void areContentsTheSame_unchangedEntry_returnTrue() {
+        assertThat(createCallback().areContentsTheSame(0, 1)).isTrue();
+    }
+
+    @Test
+    public void areContentsTheSame_sizeChangedInPlace_returnFalse() {
+        mOldEntries.get(0).sizeStr = "1 MB";
+
+        assertThat(createCallback().areContentsTheSame(0, 1)).isFalse();
+    }
+
+    @Test
+    public void getSignatures_nullEntries_returnNull() {
+        assertThat(AppEntriesDiffCallback.getSignatures(null)).isNull();
+    }
+
+    @Test
+    public void calculateDiff_noOldEntries_returnNull() {
+        assertThat(AppEntriesDiffCallback.calculateDiff(null, null, mNewEntries,
+                AppEntriesDiffCallback.getSignatures(mNewEntries))).isNull();
+    }
+
+    @Test
+    public void calculateDiff_oldEntries_returnDiff() {
+        assertThat(AppEntriesDiffCallback.calculateDiff(mOldEntries, mOldSignatures, mNewEntries,
+                AppEntriesDiffCallback.getSignatures(mNewEntries))).isNotNull();
+    }
+
+    private AppEntriesDiffCallback createCallback() {
+        return new AppEntriesDiffCallback(mOldEntries, mOldSignatures, mNewEntries,
+                AppEntriesDiffCallback.getSignatures(mNewEntries));
+    }
+
+    private static AppEntry createAppEntry(long id, String label) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.sourceDir = "abc";
+        final AppEntry entry = new AppEntry(RuntimeEnvironment.application, info, id);
+        entry.label = label;
+        return entry;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexTest {
+
+    private static final String[] APP_NAMES =
+            {"Apricot", "Banana", "Cantaloupe", "Fig", "Mango", "Bananarama"};
+
+    private List<AppEntry> mEntries;
+    private AppSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mEntries = new ArrayList<>();
+        for (String name : APP_NAMES) {
+            final AppEntry entry = mock(AppEntry.class);
+            entry.label = name;
+            mEntries.add(entry);
+        }
+        mIndex = new AppSearchIndex(mEntries);
+    }
+
+    @Test
+    public void filter_shortQuery_matchSubstringInOrder() {
+        assertThat(getLabels(mIndex.filter("an")))
+                .containsExactly("Banana", "Cantaloupe", "Mango", "Bananarama").inOrder();
+    }
+
+    @Test
+    public void filter_longQuery_ignoreCase() {
+        assertThat(getLabels(mIndex.filter("NANA"))).containsExactly("Banana", "Bananarama");
+    }
+
+    @Test
+    public void filter_unknownTrigram_noMatch() {
+        assertThat(mIndex.filter("orange")).isEmpty();
+    }
+
+    @Test
+    public void filter_extendedQuery_matchWithinPreviousMatches() {
+        mIndex.filter("ban");
+
+        assertThat(getLabels(mIndex.filter("banana"))).containsExactly("Banana", "Bananarama");
+        assertThat(getLabels(mIndex.filter("bananar"))).containsExactly("Bananarama");
+    }
+
+    @Test
+    public void filter_shorterQueryAfterLongerOne_matchAllEntries() {
+        mIndex.filter("bananar");
+
+        assertThat(getLabels(mIndex.filter("a"))).hasSize(5);
+    }
+
+    @Test
+    public void filter_nullLabel_noCrash() {
+        mEntries.add(mock(AppEntry.class));
+        mIndex = new AppSearchIndex(mEntries);
+
+        assertThat(getLabels(mIndex.filter("fig"))).containsExactly("Fig");
+    }
+
+    private static List<String> getLabels(List<AppEntry> entries) {
+        final List<String> labels = new ArrayList<>();
+        for (AppEntry entry : entries) {
+            labels.add(entry.label);
+        }
+        return labels;
+    }
+}
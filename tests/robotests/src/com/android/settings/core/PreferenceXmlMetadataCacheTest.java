@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheTest {
+
+    private static final int XML_RES_ID = R.xml.display_settings;
+    private static final int FLAGS = MetadataFlag.FLAG_NEED_KEY;
+
+    private Context mContext;
+    private File mFile;
+    private PreferenceXmlMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = new File(mContext.getCacheDir(),
+                "test_" + PreferenceXmlMetadataCache.CACHE_FILE_NAME);
+        mFile.delete();
+        mCache = new PreferenceXmlMetadataCache(mFile);
+    }
+
+    @Test
+    public void get_notCached_returnNull() {
+        assertThat(mCache.get(mContext, XML_RES_ID, FLAGS)).isNull();
+    }
+
+    @Test
+    public void get_cached_returnCopyOfMetadata() {
+        final List<Bundle> metadata = getMetadata();
+        mCache.put(mContext, XML_RES_ID, FLAGS, metadata);
+
+        final List<Bundle> result = mCache.get(mContext, XML_RES_ID, FLAGS);
+        result.get(0).putString(METADATA_KEY, "modified");
+
+        assertThat(mCache.get(mContext, XML_RES_ID, FLAGS).get(0).getString(METADATA_KEY))
+                .isEqualTo("key1");
+    }
+
+    @Test
+    public void get_differentFlags_returnNull() {
+        mCache.put(mContext, XML_RES_ID, FLAGS, getMetadata());
+
+        assertThat(mCache.get(mContext, XML_RES_ID, FLAGS | MetadataFlag.FLAG_NEED_PREF_TITLE))
+                .isNull();
+    }
+
+    @Test
+    public void buildPackageKey_containsBuildDate() {
+        assertThat(PreferenceXmlMetadataCache.buildPackageKey(mContext)).startsWith(Build.DATE);
+    }
+
+    @Test
+    public void buildPackageKey_overlayAdded_keyChanged() {
+        final String key = PreferenceXmlMetadataCache.buildPackageKey(mContext);
+        mContext.getApplicationInfo().resourceDirs = new String[] {"/vendor/overlay/test.apk"};
+
+        try {
+            assertThat(PreferenceXmlMetadataCache.buildPackageKey(mContext)).isNotEqualTo(key);
+        } finally {
+            mContext.getApplicationInfo().resourceDirs = null;
+        }
+    }
+
+    @Test
+    public void get_writtenToDisk_newInstanceReadsMetadata() {
+        mCache.put(mContext, XML_RES_ID, FLAGS, getMetadata());
+        mCache.writeToDisk();
+
+        final List<Bundle> result =
+                new PreferenceXmlMetadataCache(mFile).get(mContext, XML_RES_ID, FLAGS);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getString(METADATA_KEY)).isEqualTo("key1");
+        assertThat(result.get(0).getInt(METADATA_ICON)).isEqualTo(42);
+        assertThat(result.get(0).getBoolean(METADATA_SEARCHABLE)).isTrue();
+        assertThat(result.get(1).containsKey(METADATA_CONTROLLER)).isTrue();
+        assertThat(result.get(1).getString(METADATA_CONTROLLER)).isNull();
+    }
+
+    @Test
+    public void extractMetadata_secondCall_sameResult() throws Exception {
+        final List<Bundle> first =
+                PreferenceXmlParserUtils.extractMetadata(mContext, XML_RES_ID, FLAGS);
+        final List<Bundle> second =
+                PreferenceXmlParserUtils.extractMetadata(mContext, XML_RES_ID, FLAGS);
+
+        assertThat(second).hasSize(first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertThat(second.get(i).getString(METADATA_KEY))
+                    .isEqualTo(first.get(i).getString(METADATA_KEY));
+        }
+    }
+
+    private List<Bundle> getMetadata() {
+        final List<Bundle> metadata = new ArrayList<>();
+        final Bundle first = new Bundle();
+        first.putString(METADATA_KEY, "key1");
+        first.putInt(METADATA_ICON, 42);
+        first.putBoolean(METADATA_SEARCHABLE, true);
+        metadata.add(first);
+        final Bundle second = new Bundle();
+        second.putString(METADATA_KEY, "key2");
+        second.putString(METADATA_CONTROLLER, null);
+        metadata.add(second);
+        return metadata;
+    }
+}
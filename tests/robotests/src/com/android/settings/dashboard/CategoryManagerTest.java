@@ -22,6 +22,7 @@ import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYH
 
 import static com.google.common.truth.Truth.assertThat;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
@@ -41,6 +42,7 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -313,6 +315,56 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void updateCategoryFromBlacklist_shouldNotModifyPublishedCategory() {
+        final Tile tile1 = createActivityTile(CATEGORY_HOMEPAGE, "package1", "class1", 1);
+        final Tile tile2 = createActivityTile(CATEGORY_HOMEPAGE, "package2", "class2", 2);
+        final DashboardCategory category = new DashboardCategory(CATEGORY_HOMEPAGE);
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        category.addTile(tile1);
+        category.addTile(tile2);
+        categoryManager.setCategories(Collections.singletonList(category));
+
+        categoryManager.updateCategoryFromBlacklist(
+                Collections.singleton(new ComponentName("package1", "class1")));
+
+        assertThat(category.getTilesCount()).isEqualTo(2);
+        final DashboardCategory filtered =
+                categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE);
+        assertThat(filtered.getTilesCount()).isEqualTo(1);
+        assertThat(filtered.getTile(0)).isSameAs(tile2);
+        assertThat(categoryManager.getCategories(mContext)).containsExactly(filtered);
+    }
+
+    @Test
+    public void updateCategoryFromBlacklist_noBlacklistedTile_shouldKeepCategory() {
+        final DashboardCategory category = new DashboardCategory(CATEGORY_HOMEPAGE);
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        category.addTile(createActivityTile(CATEGORY_HOMEPAGE, "package1", "class1", 1));
+        categoryManager.setCategories(Collections.singletonList(category));
+
+        categoryManager.updateCategoryFromBlacklist(
+                Collections.singleton(new ComponentName("package2", "class2")));
+
+        assertThat(categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE))
+                .isSameAs(category);
+    }
+
+    @Test
+    public void evictCachedTiles_shouldOnlyRemoveTilesOfChangedPackages() {
+        mTileByComponentCache.put(new Pair<>("package1", "class1"),
+                createActivityTile(CATEGORY_HOMEPAGE, "package1", "class1", 1));
+        mTileByComponentCache.put(new Pair<>("package1", "class2"),
+                createActivityTile(CATEGORY_HOMEPAGE, "package1", "class2", 2));
+        mTileByComponentCache.put(new Pair<>("package2", "class1"),
+                createActivityTile(CATEGORY_HOMEPAGE, "package2", "class1", 3));
+
+        CategoryManager.evictCachedTiles(mTileByComponentCache, Collections.singleton("package1"));
+
+        assertThat(mTileByComponentCache.keySet())
+                .containsExactly(new Pair<>("package2", "class1"));
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();
@@ -57,6 +57,41 @@ public class ControllerFutureTaskTest {
         assertThat(futureTask.getController().getPreferenceKey()).isEqualTo(KEY);
     }
 
+    @Test
+    public void compareTo_lowerPriorityValue_orderedFirst() {
+        final ControllerFutureTask highTask = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */, 1 /* priority */);
+        final ControllerFutureTask lowTask = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */, 10 /* priority */);
+
+        assertThat(highTask.compareTo(lowTask)).isLessThan(0);
+        assertThat(lowTask.compareTo(highTask)).isGreaterThan(0);
+    }
+
+    @Test
+    public void compareTo_samePriority_orderedBySubmission() {
+        final ControllerFutureTask firstTask = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */);
+        final ControllerFutureTask secondTask = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */);
+
+        assertThat(firstTask.compareTo(secondTask)).isLessThan(0);
+    }
+
+    @Test
+    public void cancel_taskCancelled() {
+        final ControllerFutureTask futureTask = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */);
+
+        futureTask.cancel(false /* mayInterruptIfRunning */);
+
+        assertThat(futureTask.isCancelled()).isTrue();
+    }
 
     static class TestPreferenceController extends BasePreferenceController {
         TestPreferenceController(Context context, String preferenceKey) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.android.settings.dashboard.ControllerLatencyTracker.BUCKET_UPPER_BOUNDS_US;
+import static com.android.settings.dashboard.ControllerLatencyTracker.OP_IS_AVAILABLE;
+import static com.android.settings.dashboard.ControllerLatencyTracker.OP_UPDATE_STATE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import androidx.preference.Preference;
+
+import com.android.settings.dashboard.ControllerLatencyTracker.Histogram;
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ControllerLatencyTrackerTest {
+
+    @Mock
+    private AbstractPreferenceController mController;
+    @Mock
+    private Preference mPreference;
+    private ControllerLatencyTracker mTracker;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mTracker = new ControllerLatencyTracker();
+    }
+
+    @Test
+    public void isAvailable_returnControllerResult() {
+        when(mController.isAvailable()).thenReturn(true);
+
+        assertThat(mTracker.isAvailable(mController)).isTrue();
+    }
+
+    @Test
+    public void updateState_callController() {
+        mTracker.updateState(mController, mPreference);
+
+        verify(mController).updateState(mPreference);
+    }
+
+    @Test
+    public void getBucket_boundaries() {
+        assertThat(Histogram.getBucket(0)).isEqualTo(0);
+        assertThat(Histogram.getBucket(BUCKET_UPPER_BOUNDS_US[0])).isEqualTo(0);
+        assertThat(Histogram.getBucket(BUCKET_UPPER_BOUNDS_US[0] + 1)).isEqualTo(1);
+        assertThat(Histogram.getBucket(Long.MAX_VALUE)).isEqualTo(BUCKET_UPPER_BOUNDS_US.length);
+    }
+
+    @Test
+    public void dump_recordedOperations_dumpHistograms() throws Exception {
+        mTracker.record(mController, OP_UPDATE_STATE, 100_000 /* 100us */);
+        mTracker.record(mController, OP_UPDATE_STATE, 70_000_000 /* 70ms */);
+
+        final JSONObject dump = mTracker.dump();
+        final JSONObject operations = dump.getJSONObject("controllers")
+                .getJSONObject(mController.getClass().getName());
+
+        assertThat(operations.has("is_available")).isFalse();
+        final JSONObject updateState = operations.getJSONObject("update_state");
+        assertThat(updateState.getLong("count")).isEqualTo(2);
+        assertThat(updateState.getLong("total_us")).isEqualTo(70_100);
+        assertThat(updateState.getLong("max_us")).isEqualTo(70_000);
+        final JSONArray buckets = updateState.getJSONArray("buckets");
+        assertThat(buckets.length()).isEqualTo(BUCKET_UPPER_BOUNDS_US.length + 1);
+        assertThat(buckets.getLong(Histogram.getBucket(100))).isEqualTo(1);
+        assertThat(buckets.getLong(Histogram.getBucket(70_000))).isEqualTo(1);
+    }
+
+    @Test
+    public void dump_noRecord_noController() throws Exception {
+        final JSONObject dump = mTracker.dump();
+
+        assertThat(dump.getJSONObject("controllers").length()).isEqualTo(0);
+        assertThat(dump.getJSONArray("bucket_upper_bounds_us").length())
+                .isEqualTo(BUCKET_UPPER_BOUNDS_US.length);
+    }
+
+    @Test
+    public void record_isAvailable_countedSeparately() throws Exception {
+        mTracker.record(mController, OP_IS_AVAILABLE, 1000);
+
+        final JSONObject operations = mTracker.dump().getJSONObject("controllers")
+                .getJSONObject(mController.getClass().getName());
+
+        assertThat(operations.getJSONObject("is_available").getLong("count")).isEqualTo(1);
+        assertThat(operations.has("update_state")).isFalse();
+    }
+}
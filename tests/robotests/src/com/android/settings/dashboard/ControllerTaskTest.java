@@ -94,6 +94,19 @@ public class ControllerTaskTest {
         verify(mTestController).updateState(any(Preference.class));
     }
 
+    @Test
+    public void doRun_cancelled_noRunUpdateState() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+
+        mControllerTask.cancel();
+        mControllerTask.run();
+
+        verify(mTestController, never()).updateState(any(Preference.class));
+    }
+
     static class TestPreferenceController extends AbstractPreferenceController {
         private boolean mAvailable;
         private String mKey;
@@ -37,9 +37,11 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.ProviderInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.ArrayMap;
 import android.util.FeatureFlagUtils;
 
 import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
@@ -366,6 +368,62 @@ public class DashboardFragmentTest {
         verify(testFragment, never()).updatePreferenceStatesInParallel();
     }
 
+    @Test
+    public void getControllerTaskPriority_preferenceOnScreen_returnPreferencePosition() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        when(controller.getPreferenceKey()).thenReturn("key");
+        final Map<String, Integer> positions = new ArrayMap<>();
+        positions.put("key", 3);
+
+        assertThat(mTestFragment.getControllerTaskPriority(positions, controller)).isEqualTo(3);
+    }
+
+    @Test
+    public void getControllerTaskPriority_noPreference_returnDefaultPriority() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        when(controller.getPreferenceKey()).thenReturn("key");
+
+        assertThat(mTestFragment.getControllerTaskPriority(new ArrayMap<>(), controller))
+                .isEqualTo(ControllerFutureTask.PRIORITY_DEFAULT);
+    }
+
+    @Test
+    public void getPreferencePositions_nestedGroup_flattenedInScreenOrder() {
+        final PreferenceScreen screen =
+                new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        final Preference last = new Preference(mContext);
+        last.setKey("last");
+        last.setOrder(2);
+        screen.addPreference(last);
+        final PreferenceCategory category = new PreferenceCategory(mContext);
+        category.setKey("category");
+        category.setOrder(1);
+        screen.addPreference(category);
+        final Preference nested = new Preference(mContext);
+        nested.setKey("nested");
+        nested.setOrder(10);
+        category.addPreference(nested);
+
+        final Map<String, Integer> positions = DashboardFragment.getPreferencePositions(screen);
+
+        assertThat(positions.get("category")).isEqualTo(0);
+        assertThat(positions.get("nested")).isEqualTo(1);
+        assertThat(positions.get("last")).isEqualTo(2);
+    }
+
+    @Test
+    public void onStop_cancelPendingControllerTasks() {
+        final ControllerFutureTask task = new ControllerFutureTask(
+                new ControllerTask(new TestPreferenceController(mContext), mTestFragment.mScreen,
+                        null /* metricsFeature */, DASHBOARD_CONTAINER), null /* result */);
+        mTestFragment.mPendingControllerTasks.add(task);
+
+        mTestFragment.onStop();
+
+        assertThat(task.isCancelled()).isTrue();
+        assertThat(mTestFragment.mPendingControllerTasks).isEmpty();
+    }
+
     public static class TestPreferenceController extends AbstractPreferenceController
             implements PreferenceControllerMixin {
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.android.settings.deviceinfo.storage.PackageStorageStatsStore.CATEGORY_GAMES;
+import static com.android.settings.deviceinfo.storage.PackageStorageStatsStore.CATEGORY_OTHER;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.ApplicationInfo;
+import android.util.ArraySet;
+import android.util.SparseArray;
+
+import com.android.settings.deviceinfo.storage.PackageStorageStatsStore.Entry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class PackageStorageStatsStoreTest {
+
+    private static final int PRIMARY_USER_ID = 0;
+    private static final int SECONDARY_USER_ID = 10;
+    private static final String PACKAGE_NAME = "com.android.test";
+    private static final String SOURCE_DIR = "/data/app/com.android.test-1/base.apk";
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private PackageStorageStatsStore mStore;
+
+    @Before
+    public void setUp() {
+        mStore = new PackageStorageStatsStore(null /* databaseHelper */, "" /* uuid */,
+                REFRESH_INTERVAL_MS);
+        mStore.load();
+    }
+
+    @Test
+    public void update_sameEntryTwice_totalsCountedOnce() {
+        mStore.update(Collections.singletonList(createEntry(PRIMARY_USER_ID, 10, 1)));
+        mStore.update(Collections.singletonList(createEntry(PRIMARY_USER_ID, 20, 2)));
+
+        assertThat(mStore.getTotals(PRIMARY_USER_ID).otherAppsSize).isEqualTo(22);
+    }
+
+    @Test
+    public void update_multipleUsers_codeSizeCountedForFirstUser() {
+        mStore.update(Arrays.asList(createEntry(SECONDARY_USER_ID, 10, 1),
+                createEntry(PRIMARY_USER_ID, 10, 1)));
+
+        assertThat(mStore.getTotals(PRIMARY_USER_ID).otherAppsSize).isEqualTo(11);
+        assertThat(mStore.getTotals(SECONDARY_USER_ID).otherAppsSize).isEqualTo(10);
+    }
+
+    @Test
+    public void retainInstalledPackages_removedForFirstUser_codeSizeMovesToNextUser() {
+        mStore.update(Arrays.asList(createEntry(PRIMARY_USER_ID, 10, 1),
+                createEntry(SECONDARY_USER_ID, 10, 1)));
+
+        final SparseArray<Set<String>> installed = new SparseArray<>();
+        installed.put(PRIMARY_USER_ID, new ArraySet<>());
+        installed.put(SECONDARY_USER_ID, new ArraySet<>(Collections.singleton(PACKAGE_NAME)));
+        mStore.retainInstalledPackages(installed);
+
+        assertThat(mStore.getTotals(PRIMARY_USER_ID).otherAppsSize).isEqualTo(0);
+        assertThat(mStore.getTotals(SECONDARY_USER_ID).otherAppsSize).isEqualTo(11);
+    }
+
+    @Test
+    public void needsRefresh_freshEntry_false() {
+        mStore.update(Collections.singletonList(createEntry(PRIMARY_USER_ID, 10, 1)));
+
+        assertThat(mStore.needsRefresh(PRIMARY_USER_ID, createApp(), 100)).isFalse();
+        assertThat(mStore.needsRefresh(SECONDARY_USER_ID, createApp(), 100)).isTrue();
+    }
+
+    @Test
+    public void needsRefresh_staleEntry_true() {
+        mStore.update(Collections.singletonList(createEntry(PRIMARY_USER_ID, 10, 1)));
+
+        assertThat(mStore.needsRefresh(PRIMARY_USER_ID, createApp(), REFRESH_INTERVAL_MS))
+                .isTrue();
+    }
+
+    @Test
+    public void needsRefresh_packageUpdated_true() {
+        mStore.update(Collections.singletonList(createEntry(PRIMARY_USER_ID, 10, 1)));
+        final ApplicationInfo app = createApp();
+        app.sourceDir = "/data/app/com.android.test-2/base.apk";
+
+        assertThat(mStore.needsRefresh(PRIMARY_USER_ID, app, 100)).isTrue();
+    }
+
+    @Test
+    public void needsRefresh_packageChanged_trueUntilMeasuredAgain() {
+        mStore.update(Collections.singletonList(createEntry(PRIMARY_USER_ID, 10, 1)));
+        mStore.markChanged(PACKAGE_NAME, 50);
+
+        assertThat(mStore.needsRefresh(PRIMARY_USER_ID, createApp(), 100)).isTrue();
+
+        mStore.update(Collections.singletonList(new Entry(PRIMARY_USER_ID, PACKAGE_NAME,
+                SOURCE_DIR, CATEGORY_OTHER, 5, 1, 60 /* timestampMs */)));
+
+        assertThat(mStore.needsRefresh(PRIMARY_USER_ID, createApp(), 100)).isFalse();
+        assertThat(mStore.getTotals(PRIMARY_USER_ID).otherAppsSize).isEqualTo(6);
+    }
+
+    @Test
+    public void getCategory_legacyGameFlag_games() {
+        final ApplicationInfo app = createApp();
+        app.flags = ApplicationInfo.FLAG_IS_GAME;
+
+        assertThat(PackageStorageStatsStore.getCategory(app)).isEqualTo(CATEGORY_GAMES);
+    }
+
+    private static Entry createEntry(int userId, long dataBytes, long codeBytes) {
+        return new Entry(userId, PACKAGE_NAME, SOURCE_DIR, CATEGORY_OTHER, dataBytes, codeBytes,
+                0 /* timestampMs */);
+    }
+
+    private static ApplicationInfo createApp() {
+        final ApplicationInfo app = new ApplicationInfo();
+        app.packageName = PACKAGE_NAME;
+        app.sourceDir = SOURCE_DIR;
+        app.category = ApplicationInfo.CATEGORY_UNDEFINED;
+        return app;
+    }
+}
@@ -382,4 +382,19 @@ public class BatteryInfoTest {
         info = getBatteryInfo(true /* charging */, true /* enhanced */, true /* estimate */);
         assertHistoryAndLinearProjection(info);
     }
+
+    @Test
+    public void testBindHistory_boundTwice_historyReadOnce() {
+        final BatteryInfo info = getBatteryInfo(false /* charging */, false /* enhanced */,
+                false /* estimate */);
+        mockBatteryStatsHistory();
+        final UsageView view = mock(UsageView.class);
+        when(view.getContext()).thenReturn(mContext);
+
+        info.bindHistory(view);
+        info.bindHistory(view);
+
+        verify(mBatteryStats, times(1)).startIteratingHistoryLocked();
+        verify(view, times(2)).addPath(any(SparseIntArray.class));
+    }
 }
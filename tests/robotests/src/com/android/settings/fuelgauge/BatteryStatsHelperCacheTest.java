@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.os.UserManager;
+
+import com.android.internal.os.BatteryStatsHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryStatsHelperCacheTest {
+
+    @Mock
+    private BatteryUtils mBatteryUtils;
+    @Mock
+    private UserManager mUserManager;
+
+    private Context mContext;
+    private BatteryStatsHelperCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mCache = new BatteryStatsHelperCache(BatteryStatsHelperCache.DEFAULT_TTL_MS);
+    }
+
+    @Test
+    public void getStatsHelper_withinTtl_refreshOnce() {
+        final BatteryStatsHelper statsHelper =
+                mCache.getStatsHelper(mContext, mBatteryUtils, mUserManager);
+
+        assertThat(mCache.getStatsHelper(mContext, mBatteryUtils, mUserManager))
+                .isSameAs(statsHelper);
+        assertThat(mCache.getCachedStatsHelper()).isSameAs(statsHelper);
+        verify(mBatteryUtils, times(1)).initBatteryStatsHelper(any(), eq(null), eq(mUserManager));
+    }
+
+    @Test
+    public void getStatsHelper_ttlExpired_refreshAgain() {
+        mCache.mTtlMs = 0;
+        final BatteryStatsHelper statsHelper =
+                mCache.getStatsHelper(mContext, mBatteryUtils, mUserManager);
+
+        assertThat(mCache.getCachedStatsHelper()).isNull();
+        assertThat(mCache.getStatsHelper(mContext, mBatteryUtils, mUserManager))
+                .isNotSameAs(statsHelper);
+        verify(mBatteryUtils, times(2)).initBatteryStatsHelper(any(), eq(null), eq(mUserManager));
+    }
+
+    @Test
+    public void getStatsHelper_invalidated_refreshAgain() {
+        final BatteryStatsHelper statsHelper =
+                mCache.getStatsHelper(mContext, mBatteryUtils, mUserManager);
+
+        mCache.invalidate();
+
+        assertThat(mCache.getCachedStatsHelper()).isNull();
+        assertThat(mCache.getStatsHelper(mContext, mBatteryUtils, mUserManager))
+                .isNotSameAs(statsHelper);
+    }
+}
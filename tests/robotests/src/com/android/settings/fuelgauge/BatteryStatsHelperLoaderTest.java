@@ -15,6 +15,8 @@
  */
 package com.android.settings.fuelgauge;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
@@ -25,6 +27,9 @@ import static org.mockito.Mockito.when;
 import android.content.Context;
 import android.net.ConnectivityManager;
 
+import com.android.internal.os.BatteryStatsHelper;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -52,6 +57,12 @@ public class BatteryStatsHelperLoaderTest {
 
         mBatteryStatsHelperLoader = spy(new BatteryStatsHelperLoader(mContext));
         mBatteryStatsHelperLoader.mBatteryUtils = mBatteryUtils;
+        BatteryStatsHelperCache.getInstance().invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        BatteryStatsHelperCache.getInstance().invalidate();
     }
 
     @Test
@@ -61,4 +72,13 @@ public class BatteryStatsHelperLoaderTest {
 
         verify(mBatteryUtils).initBatteryStatsHelper(any(), eq(null), any());
     }
+
+    @Test
+    public void testLoadInBackground_loadTwice_shareStatsHelper() {
+        when(mBatteryStatsHelperLoader.getContext()).thenReturn(mContext);
+        final BatteryStatsHelper statsHelper = mBatteryStatsHelperLoader.loadInBackground();
+
+        assertThat(mBatteryStatsHelperLoader.loadInBackground()).isSameAs(statsHelper);
+        verify(mBatteryUtils).initBatteryStatsHelper(any(), eq(null), any());
+    }
 }
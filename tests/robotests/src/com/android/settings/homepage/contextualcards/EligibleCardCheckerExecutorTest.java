@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class EligibleCardCheckerExecutorTest {
+
+    private static final Uri TEST_SLICE_URI = Uri.parse("content://test/test");
+
+    private Context mContext;
+    private EligibleCardCheckerExecutor mExecutor;
+    private EligibleCardChecker mChecker;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mExecutor = spy(new EligibleCardCheckerExecutor());
+        mChecker = mock(EligibleCardChecker.class);
+        doReturn(mChecker).when(mExecutor).createChecker(any(Context.class),
+                any(ContextualCard.class));
+    }
+
+    @Test
+    public void submit_eligibleCard_returnCard() throws Exception {
+        final ContextualCard card = getContextualCard("test", 1);
+        when(mChecker.call()).thenReturn(card);
+
+        final ContextualCard result = mExecutor.submit(mContext, card).get();
+
+        assertThat(result.getName()).isEqualTo("test");
+    }
+
+    @Test
+    public void submit_notEligibleCard_returnNull() throws Exception {
+        when(mChecker.call()).thenReturn(null);
+
+        assertThat(mExecutor.submit(mContext, getContextualCard("test", 1)).get()).isNull();
+    }
+
+    @Test
+    public void submit_sameUriTwice_checkOnce() throws Exception {
+        final ContextualCard card = getContextualCard("test", 1);
+        when(mChecker.call()).thenReturn(card);
+
+        mExecutor.submit(mContext, card).get();
+        mExecutor.submit(mContext, card).get();
+
+        verify(mExecutor, times(1)).createChecker(mContext, card);
+    }
+
+    @Test
+    public void submit_cachedResultOfOtherCard_keepOwnFields() throws Exception {
+        final ContextualCard card = getContextualCard("test", 1);
+        when(mChecker.call()).thenReturn(card.mutate().setHasInlineAction(true).build());
+        mExecutor.submit(mContext, card).get();
+
+        final ContextualCard result =
+                mExecutor.submit(mContext, getContextualCard("other", 0.5)).get();
+
+        assertThat(result.getName()).isEqualTo("other");
+        assertThat(result.getRankingScore()).isEqualTo(0.5);
+        assertThat(result.hasInlineAction()).isTrue();
+    }
+
+    @Test
+    public void submit_negativeRankingScore_notCached() throws Exception {
+        final ContextualCard card = getContextualCard("test", -1);
+        when(mChecker.call()).thenReturn(null);
+
+        mExecutor.submit(mContext, card).get();
+        mExecutor.submit(mContext, card).get();
+
+        verify(mExecutor, times(2)).createChecker(mContext, card);
+    }
+
+    @Test
+    public void submit_afterClearCachedResults_checkAgain() throws Exception {
+        final ContextualCard card = getContextualCard("test", 1);
+        when(mChecker.call()).thenReturn(card);
+
+        mExecutor.submit(mContext, card).get();
+        mExecutor.clearCachedResults();
+        mExecutor.submit(mContext, card).get();
+
+        verify(mExecutor, times(2)).createChecker(mContext, card);
+    }
+
+    private ContextualCard getContextualCard(String name, double rankingScore) {
+        return new ContextualCard.Builder()
+                .setName(name)
+                .setRankingScore(rankingScore)
+                .setCardType(ContextualCard.CardType.SLICE)
+                .setSliceUri(TEST_SLICE_URI)
+                .build();
+    }
+}
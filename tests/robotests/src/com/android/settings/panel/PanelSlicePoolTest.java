@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.panel;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import androidx.slice.Slice;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PanelSlicePoolTest {
+
+    private static final Uri URI = Uri.parse("content://com.android.settings.slices/test");
+
+    private PanelSlicePool mPool;
+    private Slice mSlice;
+
+    @Before
+    public void setUp() {
+        mPool = new PanelSlicePool(PanelSlicePool.MAX_AGE_MS);
+        mSlice = new Slice.Builder(URI).build();
+    }
+
+    @Test
+    public void get_noSlice_returnNull() {
+        assertThat(mPool.get(URI)).isNull();
+    }
+
+    @Test
+    public void get_freshSlice_returnSlice() {
+        mPool.put(URI, mSlice);
+
+        assertThat(mPool.get(URI)).isSameAs(mSlice);
+    }
+
+    @Test
+    public void get_staleSlice_returnNull() {
+        mPool = new PanelSlicePool(-1 /* maxAgeMs */);
+        mPool.put(URI, mSlice);
+
+        assertThat(mPool.get(URI)).isNull();
+    }
+
+    @Test
+    public void remove_slice_returnNull() {
+        mPool.put(URI, mSlice);
+
+        mPool.remove(URI);
+
+        assertThat(mPool.get(URI)).isNull();
+    }
+}
@@ -127,6 +127,19 @@ public class PanelSlicesAdapterTest {
         assertThat(adapter.getData().size()).isEqualTo(MAX_NUM_OF_SLICES);
     }
 
+    @Test
+    public void removeSliceLiveData_sliceRemoved() {
+        addTestLiveData(Uri.parse("uri0"));
+        addTestLiveData(Uri.parse("uri1"));
+        final PanelSlicesAdapter adapter =
+                new PanelSlicesAdapter(mPanelFragment, mData, 0 /* metrics category */);
+
+        adapter.removeSliceLiveData(mData.get(Uri.parse("uri0")));
+
+        assertThat(adapter.getItemCount()).isEqualTo(1);
+        assertThat(adapter.getData()).containsExactly(mData.get(Uri.parse("uri1")));
+    }
+
     @Test
     public void mediaOutputIndicatorSlice_shouldNotAllowDividerAbove() {
         addTestLiveData(MEDIA_OUTPUT_INDICATOR_SLICE_URI);
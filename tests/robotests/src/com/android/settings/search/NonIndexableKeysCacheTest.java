@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.Settings;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NonIndexableKeysCacheTest {
+
+    private static final String PROVIDER = "com.android.settings.FakeFragment";
+    private static final String OTHER_PROVIDER = "com.android.settings.OtherFakeFragment";
+    private static final Uri URI = Settings.Global.getUriFor("fake_setting");
+
+    private Context mContext;
+    private NonIndexableKeysCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new NonIndexableKeysCache(mContext);
+    }
+
+    @Test
+    public void get_notCached_returnNull() {
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+
+    @Test
+    public void put_noDependencies_notCached() {
+        mCache.put(PROVIDER, getKeys(), null /* dependencies */, mCache.getGeneration());
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+
+    @Test
+    public void put_withDependencies_cached() {
+        mCache.put(PROVIDER, getKeys(), new NonIndexableKeysCache.Dependencies().addUri(URI),
+                mCache.getGeneration());
+
+        assertThat(mCache.get(PROVIDER)).containsExactly("key1", "key2");
+    }
+
+    @Test
+    public void put_nullKeys_cachedAsEmpty() {
+        mCache.put(PROVIDER, null /* keys */,
+                new NonIndexableKeysCache.Dependencies().dependOnUsers(),
+                mCache.getGeneration());
+
+        assertThat(mCache.get(PROVIDER)).isEmpty();
+    }
+
+    @Test
+    public void put_invalidatedWhileComputing_notCached() {
+        final long generation = mCache.getGeneration();
+        mCache.put(OTHER_PROVIDER, getKeys(),
+                new NonIndexableKeysCache.Dependencies().addUri(URI), generation);
+        mCache.onUriChanged(URI);
+
+        mCache.put(PROVIDER, getKeys(), new NonIndexableKeysCache.Dependencies().addUri(URI),
+                generation);
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+
+    @Test
+    public void onUriChanged_onlyDependentsInvalidated() {
+        mCache.put(PROVIDER, getKeys(), new NonIndexableKeysCache.Dependencies().addUri(URI),
+                mCache.getGeneration());
+        mCache.put(OTHER_PROVIDER, getKeys(),
+                new NonIndexableKeysCache.Dependencies().dependOnPackages(),
+                mCache.getGeneration());
+
+        mCache.onUriChanged(URI);
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+        assertThat(mCache.get(OTHER_PROVIDER)).isNotNull();
+    }
+
+    @Test
+    public void onPackagesChanged_packageDependentsInvalidated() {
+        mCache.put(PROVIDER, getKeys(),
+                new NonIndexableKeysCache.Dependencies().dependOnPackages(),
+                mCache.getGeneration());
+
+        mCache.onPackagesChanged();
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+
+    @Test
+    public void onUsersChanged_userDependentsInvalidated() {
+        mCache.put(PROVIDER, getKeys(), new NonIndexableKeysCache.Dependencies().dependOnUsers(),
+                mCache.getGeneration());
+
+        mCache.onUsersChanged();
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+
+    @Test
+    public void get_returnCopy() {
+        mCache.put(PROVIDER, getKeys(), new NonIndexableKeysCache.Dependencies().addUri(URI),
+                mCache.getGeneration());
+
+        mCache.get(PROVIDER).clear();
+
+        assertThat(mCache.get(PROVIDER)).hasSize(2);
+    }
+
+    @Test
+    public void dumpStats_countHitsMissesAndInvalidations() throws Exception {
+        mCache.get(PROVIDER);
+        mCache.put(PROVIDER, getKeys(), new NonIndexableKeysCache.Dependencies().addUri(URI),
+                mCache.getGeneration());
+        mCache.get(PROVIDER);
+        mCache.onUriChanged(URI);
+
+        final JSONObject stats = mCache.dumpStats();
+
+        assertThat(stats.getLong("hits")).isEqualTo(1);
+        assertThat(stats.getLong("misses")).isEqualTo(1);
+        assertThat(stats.getLong("invalidations")).isEqualTo(1);
+        assertThat(stats.getInt("entries")).isEqualTo(0);
+    }
+
+    private List<String> getKeys() {
+        return new ArrayList<>(Arrays.asList("key1", "key2"));
+    }
+}
@@ -190,6 +190,47 @@ public class SettingsSliceProviderTest {
         assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
     }
 
+    @Test
+    public void prebindSlices_indexedSlice_sliceDataCachedForBind() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+
+        mProvider.prebindSlices(Collections.singletonList(INTENT_SLICE_URI));
+
+        assertThat(mProvider.mPreboundSliceData.get(INTENT_SLICE_URI).getKey()).isEqualTo(KEY);
+        assertThat(mProvider.onBindSlice(INTENT_SLICE_URI).getItems()).isNotEmpty();
+        assertThat(mProvider.mPreboundSliceData).isEmpty();
+    }
+
+    @Test
+    public void takePreboundSlice_onlyReturnedOnce() {
+        final Slice slice = new Slice.Builder(INTENT_SLICE_URI).build();
+        mProvider.putPreboundSlice(INTENT_SLICE_URI, slice);
+
+        assertThat(mProvider.takePreboundSlice(INTENT_SLICE_URI)).isEqualTo(slice);
+        assertThat(mProvider.takePreboundSlice(INTENT_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void takePreboundSlice_sliceChanged_returnNull() {
+        mProvider.putPreboundSlice(INTENT_SLICE_URI, new Slice.Builder(INTENT_SLICE_URI).build());
+
+        SettingsSliceProvider.invalidatePreboundSlice(INTENT_SLICE_URI);
+
+        assertThat(mProvider.takePreboundSlice(INTENT_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void prebindSlices_blockedSlice_notCached() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        final Set<String> blockedSet = new ArraySet<>();
+        blockedSet.add(KEY);
+        doReturn(blockedSet).when(mProvider).getBlockedKeys();
+
+        mProvider.prebindSlices(Collections.singletonList(INTENT_SLICE_URI));
+
+        assertThat(mProvider.mPreboundSliceData).isEmpty();
+    }
+
     @Test
     public void loadSlice_registersIntentFilter() {
         SliceTestUtils.insertSliceToDb(mContext, KEY);
@@ -250,6 +291,30 @@ public class SettingsSliceProviderTest {
         assertThat(ShadowStrictMode.isThreadPolicyOverridden()).isTrue();
     }
 
+    @Test
+    public void getBlockedKeys_settingUnchanged_returnSameSnapshot() {
+        Settings.Global.putString(mContext.getContentResolver(), Settings.Global.BLOCKED_SLICES,
+                "key1,key2");
+
+        final Set<String> blockedKeys = mProvider.getBlockedKeys();
+
+        assertThat(blockedKeys).containsExactly("key1", "key2");
+        assertThat(mProvider.getBlockedKeys()).isSameAs(blockedKeys);
+    }
+
+    @Test
+    public void getBlockedKeys_settingChanged_returnNewKeys() {
+        Settings.Global.putString(mContext.getContentResolver(), Settings.Global.BLOCKED_SLICES,
+                "key1");
+        mProvider.getBlockedKeys();
+
+        Settings.Global.putString(mContext.getContentResolver(), Settings.Global.BLOCKED_SLICES,
+                "key2");
+        mProvider.onBlockedKeysChanged();
+
+        assertThat(mProvider.getBlockedKeys()).containsExactly("key2");
+    }
+
     @Test
     public void onBindSlice_requestsBlockedSlice_returnsNull() {
         final String blockedKey = "blocked_key";
@@ -114,6 +114,32 @@ public class SliceDataConverterTest {
         }
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getSliceData_multipleProviders_keepProviderOrder() {
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues().clear();
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+
+        doReturn(getFakeService()).when(mSliceDataConverter).getAccessibilityServiceInfoList();
+
+        final List<SliceData> sliceDataList = mSliceDataConverter.getSliceData();
+
+        assertThat(sliceDataList).hasSize(3);
+        assertFakeSlice(sliceDataList.get(0));
+        assertFakeSlice(sliceDataList.get(1));
+        assertFakeA11ySlice(sliceDataList.get(2));
+    }
+
+    @Test
+    public void cancel_noConversionInProgress_doesNotThrow() {
+        mSliceDataConverter.cancel();
+    }
+
     private void assertFakeSlice(SliceData fakeSlice) {
         assertThat(fakeSlice.getKey()).isEqualTo(FAKE_KEY);
         assertThat(fakeSlice.getTitle()).isEqualTo(FAKE_TITLE);
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.android.settings.slices.SliceUpdateThrottler.MAX_INTERVAL_MS;
+import static com.android.settings.slices.SliceUpdateThrottler.MIN_INTERVAL_MS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceUpdateThrottlerTest {
+
+    private static final Uri URI_1 = Uri.parse("content://com.android.settings.slices/1");
+    private static final Uri URI_2 = Uri.parse("content://com.android.settings.slices/2");
+    private static final long START_TIME_MS = 10000L;
+
+    private SliceUpdateThrottler mThrottler;
+
+    @Before
+    public void setUp() {
+        mThrottler = new SliceUpdateThrottler();
+    }
+
+    @Test
+    public void requestUpdate_firstUpdate_postponed() {
+        assertThat(mThrottler.requestUpdate(URI_1, START_TIME_MS))
+                .isEqualTo(START_TIME_MS + MIN_INTERVAL_MS);
+        assertThat(mThrottler.pollDueUris(START_TIME_MS)).isEmpty();
+    }
+
+    @Test
+    public void requestUpdate_pendingUpdate_mergedAndCounted() {
+        mThrottler.requestUpdate(URI_1, START_TIME_MS);
+        mThrottler.requestUpdate(URI_1, START_TIME_MS + 10);
+        mThrottler.requestUpdate(URI_1, START_TIME_MS + 20);
+
+        assertThat(mThrottler.pollDueUris(START_TIME_MS + MIN_INTERVAL_MS))
+                .containsExactly(URI_1);
+        assertThat(mThrottler.getNotifyCount(URI_1)).isEqualTo(1);
+        assertThat(mThrottler.getDroppedUpdateCount(URI_1)).isEqualTo(2);
+        assertThat(mThrottler.getIntervalMs(URI_1)).isEqualTo(MIN_INTERVAL_MS * 2);
+    }
+
+    @Test
+    public void pollDueUris_dueWithinBatchWindow_notifiedTogether() {
+        mThrottler.requestUpdate(URI_1, START_TIME_MS);
+        mThrottler.requestUpdate(URI_2, START_TIME_MS + SliceUpdateThrottler.BATCH_WINDOW_MS);
+
+        assertThat(mThrottler.pollDueUris(START_TIME_MS + MIN_INTERVAL_MS))
+                .containsExactly(URI_1, URI_2);
+        assertThat(mThrottler.getNextDueTime()).isEqualTo(0L);
+    }
+
+    @Test
+    public void pollDueUris_notBoundSinceLastNotify_backOff() {
+        long nowMs = START_TIME_MS;
+        for (int i = 0; i < 10; i++) {
+            nowMs = mThrottler.requestUpdate(URI_1, nowMs);
+            mThrottler.pollDueUris(nowMs);
+        }
+
+        assertThat(mThrottler.getIntervalMs(URI_1)).isEqualTo(MAX_INTERVAL_MS);
+        assertThat(mThrottler.requestUpdate(URI_1, nowMs)).isEqualTo(nowMs + MAX_INTERVAL_MS);
+    }
+
+    @Test
+    public void pollDueUris_boundAfterEachNotify_keepMinInterval() {
+        long nowMs = START_TIME_MS;
+        for (int i = 0; i < 10; i++) {
+            nowMs = mThrottler.requestUpdate(URI_1, nowMs);
+            mThrottler.pollDueUris(nowMs);
+            mThrottler.onSliceBound(URI_1);
+        }
+
+        assertThat(mThrottler.getIntervalMs(URI_1)).isEqualTo(MIN_INTERVAL_MS);
+        assertThat(mThrottler.getNotifyCount(URI_1)).isEqualTo(10);
+    }
+
+    @Test
+    public void remove_pendingUpdate_dropped() {
+        mThrottler.requestUpdate(URI_1, START_TIME_MS);
+
+        mThrottler.remove(URI_1);
+
+        assertThat(mThrottler.getNextDueTime()).isEqualTo(0L);
+        assertThat(mThrottler.pollDueUris(START_TIME_MS + MIN_INTERVAL_MS)).isEmpty();
+    }
+}
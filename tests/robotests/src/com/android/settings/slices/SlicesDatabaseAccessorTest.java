@@ -312,6 +312,54 @@ public class SlicesDatabaseAccessorTest {
         assertThat(data.getUnavailableSliceSubtitle()).isEqualTo(subtitle);
     }
 
+    @Test
+    public void getSliceDataFromKey_readTwice_notQueriedAgain() {
+        final String key = "key";
+        SliceTestUtils.insertSliceToDb(mContext, key);
+        final SliceData data = mAccessor.getSliceDataFromKey(key);
+
+        clearSlicesIndex();
+
+        assertThat(mAccessor.getSliceDataFromKey(key)).isSameAs(data);
+    }
+
+    @Test
+    public void getSliceDataFromUri_cachedKey_returnUriAndIntentType() {
+        final String key = "key";
+        SliceTestUtils.insertSliceToDb(mContext, key);
+        mAccessor.getSliceDataFromKey(key);
+        final Uri uri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_INTENT)
+                .appendPath(key)
+                .build();
+
+        final SliceData data = mAccessor.getSliceDataFromUri(uri);
+
+        assertThat(data.getUri()).isEqualTo(uri);
+        assertThat(data.getSliceType()).isEqualTo(SliceData.SliceType.INTENT);
+        assertThat(mAccessor.getSliceDataFromKey(key).getUri()).isNull();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getSliceDataFromKey_indexUpdated_cacheInvalidated() {
+        final String key = "key";
+        SliceTestUtils.insertSliceToDb(mContext, key);
+        mAccessor.getSliceDataFromKey(key);
+
+        clearSlicesIndex();
+        SlicesDatabaseHelper.getInstance(mContext).setIndexedState();
+
+        mAccessor.getSliceDataFromKey(key);
+    }
+
+    private void clearSlicesIndex() {
+        SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase()
+                .delete(SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX, null /* whereClause */,
+                        null /* whereArgs */);
+    }
+
     @Implements(ApplicationPackageManager.class)
     public static class ShadowApplicationPackageManager extends
             org.robolectric.shadows.ShadowApplicationPackageManager {
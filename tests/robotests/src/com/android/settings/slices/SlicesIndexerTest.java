@@ -18,8 +18,12 @@ package com.android.settings.slices;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.content.ContentValues;
 import android.content.Context;
@@ -194,6 +198,62 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void indexSliceData_dataUnchanged_doesNotRewriteFragment() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        doReturn(getDummyIndexableData(false)).when(mManager).getSliceData();
+        mManager.run();
+
+        helper.clearIndexedState();
+        mManager.run();
+
+        verify(mManager, times(1)).insertSliceData(any(SQLiteDatabase.class), anyList());
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+        assertThat(getIndexedRowCount()).isEqualTo(KEYS.length);
+    }
+
+    @Test
+    public void indexSliceData_dataChanged_rewritesFragment() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        doReturn(getDummyIndexableData(false)).when(mManager).getSliceData();
+        mManager.run();
+
+        helper.clearIndexedState();
+        doReturn(getDummyIndexableData(true)).when(mManager).getSliceData();
+        mManager.run();
+
+        verify(mManager, times(2)).insertSliceData(any(SQLiteDatabase.class), anyList());
+        assertThat(getIndexedRowCount()).isEqualTo(KEYS.length);
+    }
+
+    @Test
+    public void indexSliceData_fragmentRemoved_deletesFragmentRows() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        doReturn(getDummyIndexableData(false)).when(mManager).getSliceData();
+        mManager.run();
+
+        helper.clearIndexedState();
+        doReturn(new ArrayList<SliceData>()).when(mManager).getSliceData();
+        mManager.run();
+
+        assertThat(getIndexedRowCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void computeHash_sameData_sameHash() {
+        assertThat(SlicesIndexer.computeHash(getDummyIndexableData(false)))
+                .isEqualTo(SlicesIndexer.computeHash(getDummyIndexableData(false)));
+        assertThat(SlicesIndexer.computeHash(getDummyIndexableData(false)))
+                .isNotEqualTo(SlicesIndexer.computeHash(getDummyIndexableData(true)));
+    }
+
+    private int getIndexedRowCount() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            return cursor.getCount();
+        }
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);